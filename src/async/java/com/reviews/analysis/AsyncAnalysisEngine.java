@@ -0,0 +1,253 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.services.comprehend.ComprehendAsyncClient;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectKeyPhrasesItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectKeyPhrasesRequest;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentItemResult;
+import software.amazon.awssdk.services.comprehend.model.BatchDetectSentimentRequest;
+import software.amazon.awssdk.services.comprehend.model.BatchItemError;
+import software.amazon.awssdk.services.comprehend.model.KeyPhrase;
+import software.amazon.awssdk.services.comprehend.model.SentimentScore;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+// Non-blocking variant of the analysis pipeline on the SDK v2 async clients: query pages and Comprehend batches
+// are composed as CompletableFutures, so no thread waits on the network until the handler collects the result.
+// The result is stored in the same pipeline, as the versioned put AnalysisStore defines for every other writer.
+public final class AsyncAnalysisEngine implements ProductAnalysisEngine {
+
+    private static final String LANGUAGE_CODE = "en";
+
+    private static final ComprehendAsyncClient COMPREHEND = ComprehendAsyncClient.builder()
+            .httpClientBuilder(httpClientBuilder())
+            .build();
+    private static final DynamoDbAsyncClient DYNAMO_DB = DynamoDbAsyncClient.builder()
+            .httpClientBuilder(httpClientBuilder())
+            .build();
+
+    @Override
+    public String name() {
+        return "async";
+    }
+
+    @Override
+    public Map<String, Object> analyzeProduct(String productId, long deadlineMillis) {
+        ReviewAggregate aggregate = new ReviewAggregate();
+        AtomicReference<Object> watermark = new AtomicReference<>();
+        CompletableFuture<Map<String, Object>> pipeline = analyzePages(productId, null, aggregate, watermark).thenCompose(found -> {
+            if (!found) {
+                return CompletableFuture.completedFuture(Map.<String, Object>of("result", "Product not found!"));
+            }
+            Map<String, Object> analysisResult = aggregate.buildFinalResult();
+            return storePrecomputedResult(productId, analysisResult, aggregate, watermark.get()).thenApply(stored -> analysisResult);
+        });
+
+        try {
+            return pipeline.get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            pipeline.cancel(true);
+            throw new DeadlineExceededException("Review analysis did not finish before the deadline");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            pipeline.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for review analysis", e);
+        }
+    }
+
+    // Each page's batches are dispatched as soon as the page arrives, while the next page is already being queried.
+    private CompletableFuture<Boolean> analyzePages(String productId, Map<String, AttributeValue> exclusiveStartKey, ReviewAggregate aggregate,
+                                                    AtomicReference<Object> watermark) {
+        QueryRequest request = QueryRequest.builder()
+                .tableName(ReviewQuery.REVIEWS_TABLE)
+                .keyConditionExpression("product_id = :v_id")
+                .projectionExpression(ReviewQuery.REVIEW_PROJECTION)
+                .expressionAttributeNames(ReviewQuery.REVIEW_PROJECTION_NAMES)
+                .expressionAttributeValues(Map.of(":v_id", AttributeValue.builder().s(productId).build()))
+                .exclusiveStartKey(exclusiveStartKey)
+                .build();
+
+        return track(() -> DYNAMO_DB.query(request)).thenCompose(response -> {
+            for (Map<String, AttributeValue> item : response.items()) {
+                Object sortKey = sortKey(item);
+                if (sortKey != null) {
+                    watermark.accumulateAndGet(sortKey, (highest, key) -> highest == null || ReviewQuery.compareSortKeys(key, highest) > 0 ? key : highest);
+                }
+            }
+            CompletableFuture<Void> pageAnalysis = analyzePage(reviewTexts(response), aggregate);
+            CompletableFuture<Boolean> remainingPages = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? analyzePages(productId, response.lastEvaluatedKey(), aggregate, watermark)
+                    : CompletableFuture.completedFuture(false);
+            return pageAnalysis.thenCombine(remainingPages, (ignored, foundLater) -> response.count() > 0 || foundLater);
+        });
+    }
+
+    private static Object sortKey(Map<String, AttributeValue> item) {
+        AttributeValue value = item.get(SentimentAnalysisLambda.SORT_KEY);
+        return value != null ? ReviewQuery.sortKey(value.n(), value.s()) : null;
+    }
+
+    private static List<String> reviewTexts(QueryResponse response) {
+        List<String> reviews = new ArrayList<>(response.items().size());
+        for (Map<String, AttributeValue> item : response.items()) {
+            AttributeValue text = item.get("review_text");
+            if (text != null && text.s() != null && !text.s().isBlank()) {
+                reviews.add(text.s());
+            }
+        }
+        return reviews;
+    }
+
+    private CompletableFuture<Void> analyzePage(List<String> reviews, ReviewAggregate aggregate) {
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int start = 0; start < reviews.size(); start += ComprehendBatchClient.MAX_BATCH_SIZE) {
+            List<String> batch = reviews.subList(start, Math.min(start + ComprehendBatchClient.MAX_BATCH_SIZE, reviews.size()));
+            batches.add(detectSentiment(batch).thenCombine(detectKeyPhrases(batch), (sentimentResults, keyPhrasesResults) -> {
+                ReviewAggregate partial = new ReviewAggregate();
+                for (int i = 0; i < batch.size(); i++) {
+                    BatchDetectSentimentItemResult sentimentResult = sentimentResults.get(i);
+                    if (sentimentResult != null) {
+                        partial.add(toReviewResult(sentimentResult, keyPhrasesResults.get(i)), batch.get(i).length());
+                    }
+                }
+                synchronized (aggregate) {
+                    aggregate.merge(partial);
+                }
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture<?>[]::new));
+    }
+
+    private CompletableFuture<List<BatchDetectSentimentItemResult>> detectSentiment(List<String> batch) {
+        return executeBatch(batch, texts -> COMPREHEND.batchDetectSentiment(BatchDetectSentimentRequest.builder()
+                        .textList(texts)
+                        .languageCode(LANGUAGE_CODE)
+                        .build())
+                .thenApply(result -> new BatchOutcome<>(result.resultList(), result.errorList())), BatchDetectSentimentItemResult::index);
+    }
+
+    private CompletableFuture<List<BatchDetectKeyPhrasesItemResult>> detectKeyPhrases(List<String> batch) {
+        return executeBatch(batch, texts -> COMPREHEND.batchDetectKeyPhrases(BatchDetectKeyPhrasesRequest.builder()
+                        .textList(texts)
+                        .languageCode(LANGUAGE_CODE)
+                        .build())
+                .thenApply(result -> new BatchOutcome<>(result.resultList(), result.errorList())), BatchDetectKeyPhrasesItemResult::index);
+    }
+
+    private <R> CompletableFuture<List<R>> executeBatch(List<String> texts, Function<List<String>, CompletableFuture<BatchOutcome<R>>> call,
+                                                        ToIntFunction<R> indexOf) {
+        List<R> results = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        List<Integer> positions = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            positions.add(i);
+        }
+        return attemptBatch(texts, positions, 1, call, indexOf, results);
+    }
+
+    private <R> CompletableFuture<List<R>> attemptBatch(List<String> texts, List<Integer> pending, int attempt,
+                                                        Function<List<String>, CompletableFuture<BatchOutcome<R>>> call,
+                                                        ToIntFunction<R> indexOf, List<R> results) {
+        List<String> batch = new ArrayList<>(pending.size());
+        for (int position : pending) {
+            batch.add(texts.get(position));
+        }
+
+        return track(() -> call.apply(batch)).thenCompose(outcome -> {
+            List<Integer> failed = ComprehendBatchClient.collect(pending, outcome.items(), indexOf, outcome.errors(), BatchItemError::index,
+                    BatchItemError::errorCode, results);
+            if (failed.isEmpty() || attempt >= ComprehendBatchClient.MAX_ATTEMPTS) {
+                return CompletableFuture.completedFuture(results);
+            }
+            long delayMillis = ComprehendBatchClient.RETRY_BACKOFF.delayMillis(attempt + 1);
+            return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> attemptBatch(texts, failed, attempt + 1, call, indexOf, results));
+        });
+    }
+
+    // A complete recompute supersedes an interrupted run, so its continuation is dropped; the stream progress is
+    // carried over. Losing the race against a concurrent writer leaves that writer's analysis in place.
+    private static CompletableFuture<Boolean> storePrecomputedResult(String productId, Map<String, Object> analysisResult, ReviewAggregate aggregate,
+                                                                     Object watermark) {
+        GetItemRequest read = GetItemRequest.builder()
+                .tableName(AnalysisStore.ANALYSIS_TABLE)
+                .key(Map.of("product_id", AttributeValue.builder().s(productId).build()))
+                .projectionExpression(AnalysisStore.VERSION_PROJECTION)
+                .consistentRead(true)
+                .build();
+        return track(() -> DYNAMO_DB.getItem(read)).thenCompose(response -> {
+            Item previous = response.hasItem() && !response.item().isEmpty() ? AttributeValues.toItem(response.item()) : null;
+            Item item = AnalysisStore.analysisItem(productId, analysisResult, aggregate, watermark);
+            AnalysisStore.VersionCondition condition = AnalysisStore.versioned(item, previous);
+            PutItemRequest.Builder put = PutItemRequest.builder()
+                    .tableName(AnalysisStore.ANALYSIS_TABLE)
+                    .item(AttributeValues.fromItem(item))
+                    .conditionExpression(condition.expression());
+            if (!condition.values().isEmpty()) {
+                put.expressionAttributeValues(AttributeValues.fromValues(condition.values()));
+            }
+            return track(() -> DYNAMO_DB.putItem(put.build()));
+        }).thenApply(written -> true).exceptionally(failure -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof ConditionalCheckFailedException) {
+                return false;
+            }
+            throw failure instanceof CompletionException completionException ? completionException : new CompletionException(failure);
+        });
+    }
+
+    private static <T> CompletableFuture<T> track(Supplier<CompletableFuture<T>> request) {
+        InvocationMetrics.requestStarted();
+        return request.get().whenComplete((result, failure) -> InvocationMetrics.requestFinished());
+    }
+
+    private static ReviewResult toReviewResult(BatchDetectSentimentItemResult sentimentResult, BatchDetectKeyPhrasesItemResult keyPhrasesResult) {
+        List<String> keyPhrases = null;
+        if (keyPhrasesResult != null) {
+            keyPhrases = new ArrayList<>(keyPhrasesResult.keyPhrases().size());
+            for (KeyPhrase phrase : keyPhrasesResult.keyPhrases()) {
+                keyPhrases.add(phrase.text().toLowerCase(Locale.ROOT));
+            }
+        }
+        SentimentScore score = sentimentResult.sentimentScore();
+        double confidence = Math.max(Math.max(score.positive(), score.negative()), Math.max(score.neutral(), score.mixed()));
+        return new ReviewResult(Sentiment.valueOf(sentimentResult.sentimentAsString().toUpperCase(Locale.ROOT)), confidence, keyPhrases);
+    }
+
+    private static NettyNioAsyncHttpClient.Builder httpClientBuilder() {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(AnalysisConfig.getInt("AWS_MAX_CONNECTIONS", 50))
+                .connectionTimeout(Duration.ofMillis(AnalysisConfig.getInt("AWS_CONNECTION_TIMEOUT_MILLIS", 2_000)))
+                .readTimeout(Duration.ofMillis(AnalysisConfig.getInt("AWS_SOCKET_TIMEOUT_MILLIS", 10_000)))
+                .connectionMaxIdleTime(Duration.ofMillis(AnalysisConfig.getLong("AWS_CONNECTION_MAX_IDLE_MILLIS", 60_000)))
+                .connectionAcquisitionTimeout(Duration.ofMillis(AnalysisConfig.getLong("ASYNC_ACQUISITION_TIMEOUT_MILLIS", 60_000)))
+                .tcpKeepAlive(AnalysisConfig.getBoolean("AWS_TCP_KEEP_ALIVE", true));
+    }
+
+    private record BatchOutcome<R>(List<R> items, List<BatchItemError> errors) {
+    }
+}
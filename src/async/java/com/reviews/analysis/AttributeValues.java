@@ -0,0 +1,96 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.ItemUtils;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Converts items between the SDK v1 Document API, in which AnalysisStore builds and versions them, and the SDK v2
+// attribute values the async client sends, so both engines write the same items under the same conditions.
+final class AttributeValues {
+
+    private AttributeValues() {
+    }
+
+    static Map<String, AttributeValue> fromItem(Item item) {
+        return toV2(ItemUtils.toAttributeValues(item));
+    }
+
+    static Map<String, AttributeValue> fromValues(Map<String, Object> values) {
+        Map<String, AttributeValue> converted = new HashMap<>(values.size() * 2);
+        values.forEach((name, value) -> converted.put(name, toV2(ItemUtils.toAttributeValue(value))));
+        return converted;
+    }
+
+    static Item toItem(Map<String, AttributeValue> values) {
+        Map<String, com.amazonaws.services.dynamodbv2.model.AttributeValue> converted = new HashMap<>(values.size() * 2);
+        values.forEach((name, value) -> converted.put(name, toV1(value)));
+        return ItemUtils.toItem(converted);
+    }
+
+    private static Map<String, AttributeValue> toV2(Map<String, com.amazonaws.services.dynamodbv2.model.AttributeValue> values) {
+        Map<String, AttributeValue> converted = new HashMap<>(values.size() * 2);
+        values.forEach((name, value) -> converted.put(name, toV2(value)));
+        return converted;
+    }
+
+    private static AttributeValue toV2(com.amazonaws.services.dynamodbv2.model.AttributeValue value) {
+        AttributeValue.Builder builder = AttributeValue.builder();
+        if (value.getS() != null) {
+            builder.s(value.getS());
+        } else if (value.getN() != null) {
+            builder.n(value.getN());
+        } else if (value.getB() != null) {
+            builder.b(SdkBytes.fromByteBuffer(value.getB()));
+        } else if (value.getBOOL() != null) {
+            builder.bool(value.getBOOL());
+        } else if (value.getSS() != null) {
+            builder.ss(value.getSS());
+        } else if (value.getNS() != null) {
+            builder.ns(value.getNS());
+        } else if (value.getBS() != null) {
+            builder.bs(value.getBS().stream().map(SdkBytes::fromByteBuffer).toList());
+        } else if (value.getM() != null) {
+            builder.m(toV2(value.getM()));
+        } else if (value.getL() != null) {
+            builder.l(value.getL().stream().map(AttributeValues::toV2).toList());
+        } else {
+            builder.nul(true);
+        }
+        return builder.build();
+    }
+
+    private static com.amazonaws.services.dynamodbv2.model.AttributeValue toV1(AttributeValue value) {
+        com.amazonaws.services.dynamodbv2.model.AttributeValue converted = new com.amazonaws.services.dynamodbv2.model.AttributeValue();
+        if (value.s() != null) {
+            converted.setS(value.s());
+        } else if (value.n() != null) {
+            converted.setN(value.n());
+        } else if (value.b() != null) {
+            converted.setB(ByteBuffer.wrap(value.b().asByteArray()));
+        } else if (value.bool() != null) {
+            converted.setBOOL(value.bool());
+        } else if (value.hasSs()) {
+            converted.setSS(value.ss());
+        } else if (value.hasNs()) {
+            converted.setNS(value.ns());
+        } else if (value.hasBs()) {
+            converted.setBS(value.bs().stream().map(bytes -> ByteBuffer.wrap(bytes.asByteArray())).toList());
+        } else if (value.hasM()) {
+            Map<String, com.amazonaws.services.dynamodbv2.model.AttributeValue> map = new HashMap<>(value.m().size() * 2);
+            value.m().forEach((name, element) -> map.put(name, toV1(element)));
+            converted.setM(map);
+        } else if (value.hasL()) {
+            List<com.amazonaws.services.dynamodbv2.model.AttributeValue> list = value.l().stream().map(AttributeValues::toV1).toList();
+            converted.setL(list);
+        } else {
+            converted.setNULL(true);
+        }
+        return converted;
+    }
+}
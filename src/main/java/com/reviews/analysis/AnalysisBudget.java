@@ -0,0 +1,31 @@
+package com.reviews.analysis;
+
+// The share of an invocation's remaining time available for analysis. A reserve is held back for finalizing and
+// storing the result, and a new page is only started while it is expected to finish before that reserve, judging
+// by how long recent pages took.
+final class AnalysisBudget {
+
+    private static final long FINALIZE_RESERVE_MILLIS = AnalysisConfig.getLong("FINALIZE_RESERVE_MILLIS", 3_000);
+
+    private final long workDeadlineMillis;
+    private long averagePageMillis;
+
+    AnalysisBudget(long deadlineMillis) {
+        this.workDeadlineMillis = deadlineMillis == Long.MAX_VALUE ? Long.MAX_VALUE : deadlineMillis - FINALIZE_RESERVE_MILLIS;
+    }
+
+    // Analysis of a started page is abandoned at this point.
+    long workDeadlineMillis() {
+        return workDeadlineMillis;
+    }
+
+    boolean canStartPage() {
+        return workDeadlineMillis == Long.MAX_VALUE || System.currentTimeMillis() + averagePageMillis < workDeadlineMillis;
+    }
+
+    // Exponentially weighted, so the estimate follows throttling and cache hit rates as they change.
+    void pageFinished(long startedAtMillis) {
+        long pageMillis = System.currentTimeMillis() - startedAtMillis;
+        averagePageMillis = averagePageMillis == 0 ? pageMillis : (3 * averagePageMillis + pageMillis) / 4;
+    }
+}
@@ -0,0 +1,81 @@
+package com.reviews.analysis;
+
+import java.util.Locale;
+
+// Settings from environment variables, mostly read in static initializers: a missing setting takes its default,
+// and so does a malformed one, with a line in the function's log, rather than failing every invocation.
+final class AnalysisConfig {
+
+    private AnalysisConfig() {
+    }
+
+    static int getInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallBack(name, value, defaultValue);
+        }
+    }
+
+    static long getLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallBack(name, value, defaultValue);
+        }
+    }
+
+    // NaN and the infinities are as unusable as a malformed number.
+    static double getDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            return Double.isFinite(parsed) ? parsed : fallBack(name, value, defaultValue);
+        } catch (NumberFormatException e) {
+            return fallBack(name, value, defaultValue);
+        }
+    }
+
+    static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    static String getString(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    // Constant names are matched case-insensitively, whatever the default locale.
+    static <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return fallBack(name, value, defaultValue);
+        }
+    }
+
+    // Lambda sends standard error to the function's log group; no invocation context exists yet at this point.
+    private static <T> T fallBack(String name, String value, T defaultValue) {
+        System.err.println("Ignoring invalid " + name + "=" + value + ", using " + defaultValue);
+        return defaultValue;
+    }
+}
@@ -0,0 +1,27 @@
+package com.reviews.analysis;
+
+import java.util.Locale;
+
+// How much of a review is analyzed, from cheapest to richest. SENTIMENT only calls DetectSentiment; KEY_PHRASES
+// also calls DetectKeyPhrases for top_key_phrases; FULL additionally tallies the sentiment of every key phrase for
+// top_aspect_based_sentiments, which costs no further Comprehend calls but stores a second sketch of phrases.
+enum AnalysisDepth {
+    SENTIMENT,
+    KEY_PHRASES,
+    FULL;
+
+    static final AnalysisDepth[] VALUES = values();
+    static final AnalysisDepth DEFAULT = AnalysisConfig.getEnum("ANALYSIS_DEPTH", AnalysisDepth.class, FULL);
+
+    boolean includes(AnalysisDepth other) {
+        return compareTo(other) >= 0;
+    }
+
+    boolean needsKeyPhrases() {
+        return includes(KEY_PHRASES);
+    }
+
+    static AnalysisDepth parse(String name) {
+        return name == null || name.isBlank() ? DEFAULT : valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,53 @@
+package com.reviews.analysis;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs blocking Comprehend work concurrently so that the latencies of independent calls overlap, either on a
+// bounded container-wide pool or on one virtual thread per task.
+final class AnalysisExecutor {
+
+    enum Mode {
+        BOUNDED,
+        VIRTUAL
+    }
+
+    private static final Mode MODE = AnalysisConfig.getEnum("ANALYSIS_EXECUTION_MODE", Mode.class, Mode.BOUNDED);
+    private static final int PARALLELISM = AnalysisConfig.getInt("ANALYSIS_PARALLELISM", 8);
+    private static final ExecutorService EXECUTOR = MODE == Mode.BOUNDED
+            ? Executors.newFixedThreadPool(PARALLELISM, daemonThreadFactory())
+            : null;
+
+    private AnalysisExecutor() {
+    }
+
+    static <T> void forEach(List<T> items, long deadlineMillis, Consumer<T> action) {
+        try (AnalysisScope scope = openScope(deadlineMillis)) {
+            for (T item : items) {
+                scope.fork(() -> action.accept(item));
+            }
+            scope.join();
+        }
+    }
+
+    private static AnalysisScope openScope(long deadlineMillis) {
+        if (MODE == Mode.VIRTUAL) {
+            return new AnalysisScope(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("review-analysis-", 0).factory()), true,
+                    deadlineMillis);
+        }
+        return new AnalysisScope(EXECUTOR, false, deadlineMillis);
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "review-analysis-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
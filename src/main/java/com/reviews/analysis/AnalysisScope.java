@@ -0,0 +1,126 @@
+package com.reviews.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A small structured-concurrency scope: the first failure cancels the remaining subtasks, and so does reaching the
+// deadline. Closing the scope keeps subtasks that have not started from ever running and waits, until the
+// deadline, for the interrupted ones to return, so subtasks only outlive the scope when they ignore their interrupt
+// past the deadline; their results are discarded by then. StructuredTaskScope is still a preview API on Java 21.
+final class AnalysisScope implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final long deadlineMillis;
+    private final CompletionService<Void> completionService;
+    private final List<Future<Void>> futures = new ArrayList<>();
+    private final List<Subtask> subtasks = new ArrayList<>();
+    // One party for the scope and one for every subtask that may still run.
+    private final Phaser running = new Phaser(1);
+
+    AnalysisScope(ExecutorService executor, boolean ownsExecutor, long deadlineMillis) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.deadlineMillis = deadlineMillis;
+        this.completionService = new ExecutorCompletionService<>(executor);
+    }
+
+    void fork(Runnable task) {
+        Subtask subtask = new Subtask(task);
+        running.register();
+        subtasks.add(subtask);
+        futures.add(completionService.submit(subtask, null));
+    }
+
+    void join() {
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                long remainingMillis = deadlineMillis - System.currentTimeMillis();
+                Future<Void> completed = remainingMillis > 0
+                        ? completionService.poll(remainingMillis, TimeUnit.MILLISECONDS)
+                        : completionService.poll();
+                if (completed == null) {
+                    cancelAll();
+                    throw new DeadlineExceededException("Review analysis did not finish before the deadline");
+                }
+                completed.get();
+            }
+        } catch (ExecutionException e) {
+            cancelAll();
+            throw propagate(e.getCause());
+        } catch (InterruptedException e) {
+            cancelAll();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for review analysis", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        subtasks.forEach(Subtask::preventStart);
+        cancelAll();
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+        int phase = running.arrive();
+        long remainingMillis = deadlineMillis - System.currentTimeMillis();
+        try {
+            running.awaitAdvanceInterruptibly(phase, Math.max(0, remainingMillis), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Left to finish in the background; the deadline failure has been reported already.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void cancelAll() {
+        futures.forEach(future -> future.cancel(true));
+    }
+
+    private static RuntimeException propagate(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(cause);
+    }
+
+    // Whichever of the executor and close() claims a subtask first decides whether it runs, so every subtask
+    // leaves the phaser exactly once, whether it ran, was cancelled before it started or never got a thread.
+    private final class Subtask implements Runnable {
+        private final Runnable task;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Subtask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    task.run();
+                } finally {
+                    running.arriveAndDeregister();
+                }
+            }
+        }
+
+        private void preventStart() {
+            if (claimed.compareAndSet(false, true)) {
+                running.arriveAndDeregister();
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.reviews.analysis;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.document.BatchGetItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.document.TableKeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.document.TableWriteItems;
+import com.amazonaws.services.dynamodbv2.document.spec.GetItemSpec;
+import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Reads and writes ProductReviewAnalysis items. Several handlers update the same product, so every single write
+// is conditional on the version that was read and reports whether it won.
+final class AnalysisStore {
+
+    static final String ANALYSIS_TABLE = "ProductReviewAnalysis";
+
+    // Attributes maintained by one writer that the others must carry over unchanged.
+    private static final String[] CARRIED_ATTRIBUTES = {"stream_sequence"};
+    // What a conditional put needs of the item it replaces.
+    static final String VERSION_PROJECTION = "product_id, version, " + String.join(", ", CARRIED_ATTRIBUTES);
+    // What ProductAnalyzer.isFresh() looks at, without the aggregate.
+    private static final String RESULT_PROJECTION = "product_id, review_analysis, computed_at, analysis_depth, continuation";
+    private static final int MAX_GET_BATCH_SIZE = 100;
+    private static final int MAX_WRITE_BATCH_SIZE = 25;
+    private static final int MAX_BATCH_ATTEMPTS = AnalysisConfig.getInt("ANALYSIS_STORE_BATCH_MAX_ATTEMPTS", 5);
+    private static final Backoff BATCH_RETRY_BACKOFF = new Backoff(AnalysisConfig.getLong("ANALYSIS_STORE_RETRY_BASE_DELAY_MILLIS", 50),
+            AnalysisConfig.getLong("ANALYSIS_STORE_RETRY_MAX_DELAY_MILLIS", 1_000));
+
+    private final DynamoDB dynamoDB;
+    private final Table table;
+
+    AnalysisStore(DynamoDB dynamoDB) {
+        this.dynamoDB = dynamoDB;
+        this.table = dynamoDB.getTable(ANALYSIS_TABLE);
+    }
+
+    // The stored result for the freshness check: an eventually consistent read, at half the cost of a consistent
+    // one, that leaves the aggregate behind. A result replaced a moment ago is still within its max age.
+    Item loadResult(String productId) {
+        InvocationMetrics.requestStarted();
+        try {
+            return table.getItem(new GetItemSpec().withPrimaryKey("product_id", productId).withProjectionExpression(RESULT_PROJECTION));
+        } finally {
+            InvocationMetrics.requestFinished();
+        }
+    }
+
+    // The whole item, consistent, for a refresh that extends it and writes it back conditionally.
+    Item load(String productId) {
+        InvocationMetrics.requestStarted();
+        try {
+            return table.getItem(new GetItemSpec().withPrimaryKey("product_id", productId).withConsistentRead(true));
+        } finally {
+            InvocationMetrics.requestFinished();
+        }
+    }
+
+    // Many products, as loadResult() or load() would read them; products without an item are absent from the result.
+    // Unprocessed keys are retried with backoff until the attempts or the time before the deadline run out.
+    Map<String, Item> loadAll(Collection<String> productIds, boolean resultOnly, long deadlineMillis) {
+        Map<String, Item> items = new HashMap<>();
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(productIds));
+        for (int start = 0; start < distinctIds.size(); start += MAX_GET_BATCH_SIZE) {
+            TableKeysAndAttributes keys = new TableKeysAndAttributes(ANALYSIS_TABLE).withConsistentRead(!resultOnly);
+            if (resultOnly) {
+                keys.withProjectionExpression(RESULT_PROJECTION);
+            }
+            keys.addHashOnlyPrimaryKeys("product_id", distinctIds.subList(start, Math.min(start + MAX_GET_BATCH_SIZE, distinctIds.size())).toArray());
+            Map<String, KeysAndAttributes> unprocessed = Map.of();
+            for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+                if (attempt > 1 && !BATCH_RETRY_BACKOFF.awaitAttempt(attempt, deadlineMillis)) {
+                    break;
+                }
+                BatchGetItemOutcome outcome;
+                InvocationMetrics.requestStarted();
+                try {
+                    outcome = attempt == 1 ? dynamoDB.batchGetItem(keys) : dynamoDB.batchGetItemUnprocessed(unprocessed);
+                } finally {
+                    InvocationMetrics.requestFinished();
+                }
+                for (Item item : outcome.getTableItems().getOrDefault(ANALYSIS_TABLE, List.of())) {
+                    items.put(item.getString("product_id"), item);
+                }
+                unprocessed = outcome.getUnprocessedKeys();
+                if (unprocessed == null || unprocessed.isEmpty()) {
+                    break;
+                }
+            }
+            if (unprocessed != null && !unprocessed.isEmpty()) {
+                throw new IllegalStateException("Stored analyses could not be read: DynamoDB kept returning unprocessed keys");
+            }
+        }
+        return items;
+    }
+
+    // A complete analysis item; the watermark may be null when the reviews have no sort key.
+    static Item analysisItem(String productId, Map<String, Object> analysisResult, ReviewAggregate aggregate, Object watermark) {
+        Item item = new Item()
+                .withPrimaryKey("product_id", productId)
+                .withMap("review_analysis", analysisResult)
+                .withBinary("aggregate", aggregate.serialize())
+                .withString("analysis_depth", aggregate.depth().name())
+                .withLong("computed_at", System.currentTimeMillis());
+        if (watermark != null) {
+            item.with("watermark", watermark);
+        }
+        return item;
+    }
+
+    // Aggregates stored in an older format are ignored, which makes the next refresh rebuild them.
+    static ReviewAggregate readAggregate(Item item) {
+        if (item == null || !(item.get("aggregate") instanceof byte[] serialized)) {
+            return null;
+        }
+        try {
+            return ReviewAggregate.deserialize(serialized);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // The depth the stored analysis was computed at; analyses stored before depths existed were all full.
+    static AnalysisDepth readDepth(Item item) {
+        return item.hasAttribute("analysis_depth") ? AnalysisDepth.valueOf(item.getString("analysis_depth")) : AnalysisDepth.FULL;
+    }
+
+    // The key ranges an interrupted analysis still has to read, or null when it completed.
+    static List<ReviewQuery.KeyRange> readContinuation(Item item) {
+        if (item == null || !item.hasAttribute("continuation")) {
+            return null;
+        }
+        List<ReviewQuery.KeyRange> ranges = new ArrayList<>();
+        for (Object range : item.getList("continuation")) {
+            Map<?, ?> bounds = (Map<?, ?>) range;
+            ranges.add(new ReviewQuery.KeyRange(bounds.get("after"), bounds.get("up_to")));
+        }
+        return ranges.isEmpty() ? null : ranges;
+    }
+
+    static void writeContinuation(Item item, List<ReviewQuery.KeyRange> ranges) {
+        List<Map<String, Object>> continuation = new ArrayList<>(ranges.size());
+        for (ReviewQuery.KeyRange range : ranges) {
+            Map<String, Object> bounds = new HashMap<>();
+            if (range.after() != null) {
+                bounds.put("after", range.after());
+            }
+            if (range.upTo() != null) {
+                bounds.put("up_to", range.upTo());
+            }
+            continuation.add(bounds);
+        }
+        item.withList("continuation", continuation);
+    }
+
+    boolean save(Item item, Item previous) {
+        VersionCondition condition = versioned(item, previous);
+        PutItemSpec putItemSpec = new PutItemSpec().withItem(item).withConditionExpression(condition.expression());
+        if (!condition.values().isEmpty()) {
+            putItemSpec.withValueMap(condition.values());
+        }
+
+        InvocationMetrics.requestStarted();
+        try {
+            table.putItem(putItemSpec);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        } finally {
+            InvocationMetrics.requestFinished();
+        }
+    }
+
+    // Gives item the version that follows previous, which needs only the attributes of VERSION_PROJECTION, and
+    // returns the condition under which a put of item replaces exactly that version.
+    static VersionCondition versioned(Item item, Item previous) {
+        if (previous == null) {
+            item.withLong("version", 1);
+            return new VersionCondition("attribute_not_exists(product_id)", Map.of());
+        }
+        carryOver(item, previous);
+        if (!previous.hasAttribute("version")) {
+            item.withLong("version", 1);
+            return new VersionCondition("attribute_not_exists(version)", Map.of());
+        }
+        long version = previous.getLong("version");
+        item.withLong("version", version + 1);
+        return new VersionCondition("version = :v_version", Map.of(":v_version", version));
+    }
+
+    record VersionCondition(String expression, Map<String, Object> values) {
+    }
+
+    // Unconditional batch writes for bulk refreshes, keyed by product_id in previous as returned by loadAll.
+    // BatchWriteItem cannot carry conditions, so a stream update that lands between the read and this write is
+    // overwritten; bumping the version still makes any writer that read the older item lose its conditional put.
+    // Returns the products whose item could not be written. Items too large to store are skipped without failing
+    // the rest of their batch, and are not reported: their results are valid, just not kept.
+    Set<String> saveAll(List<Item> items, Map<String, Item> previous, long deadlineMillis) {
+        for (Item item : items) {
+            Item previousItem = previous.get(item.getString("product_id"));
+            if (previousItem != null) {
+                carryOver(item, previousItem);
+            }
+            item.withLong("version", previousItem != null && previousItem.hasAttribute("version") ? previousItem.getLong("version") + 1 : 1);
+        }
+
+        Set<String> unwritten = new LinkedHashSet<>();
+        for (int start = 0; start < items.size(); start += MAX_WRITE_BATCH_SIZE) {
+            List<Item> chunk = items.subList(start, Math.min(start + MAX_WRITE_BATCH_SIZE, items.size()));
+            Map<String, List<WriteRequest>> unprocessed = Map.of();
+            try {
+                for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+                    if (attempt > 1 && !BATCH_RETRY_BACKOFF.awaitAttempt(attempt, deadlineMillis)) {
+                        break;
+                    }
+                    BatchWriteItemOutcome outcome;
+                    InvocationMetrics.requestStarted();
+                    try {
+                        outcome = attempt == 1
+                                ? dynamoDB.batchWriteItem(new TableWriteItems(ANALYSIS_TABLE).withItemsToPut(chunk))
+                                : dynamoDB.batchWriteItemUnprocessed(unprocessed);
+                    } finally {
+                        InvocationMetrics.requestFinished();
+                    }
+                    unprocessed = outcome.getUnprocessedItems();
+                    if (unprocessed == null || unprocessed.isEmpty()) {
+                        break;
+                    }
+                }
+            } catch (AmazonServiceException e) {
+                if (isItemTooLarge(e)) {
+                    unwritten.addAll(saveEach(chunk));
+                } else {
+                    chunk.forEach(item -> unwritten.add(item.getString("product_id")));
+                }
+                continue;
+            }
+            if (unprocessed != null) {
+                for (WriteRequest write : unprocessed.getOrDefault(ANALYSIS_TABLE, List.of())) {
+                    unwritten.add(write.getPutRequest().getItem().get("product_id").getS());
+                }
+            }
+        }
+        return unwritten;
+    }
+
+    // One rejected item fails a whole BatchWriteItem call, so the batch is written item by item instead.
+    private Set<String> saveEach(List<Item> items) {
+        Set<String> unwritten = new LinkedHashSet<>();
+        for (Item item : items) {
+            InvocationMetrics.requestStarted();
+            try {
+                table.putItem(item);
+            } catch (AmazonServiceException e) {
+                if (!isItemTooLarge(e)) {
+                    unwritten.add(item.getString("product_id"));
+                }
+            } finally {
+                InvocationMetrics.requestFinished();
+            }
+        }
+        return unwritten;
+    }
+
+    // DynamoDB rejects items over 400 KB with a plain ValidationException; retrying cannot help.
+    static boolean isItemTooLarge(AmazonServiceException e) {
+        return "ValidationException".equals(e.getErrorCode()) && e.getErrorMessage() != null
+                && e.getErrorMessage().toLowerCase(Locale.ROOT).contains("size");
+    }
+
+    private static void carryOver(Item item, Item previous) {
+        for (String attribute : CARRIED_ATTRIBUTES) {
+            if (!item.hasAttribute(attribute) && previous.hasAttribute(attribute)) {
+                item.with(attribute, previous.get(attribute));
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.reviews.analysis;
+
+// How aspects are ordered in top_aspect_based_sentiments. Every ranking scores the per-sentiment counts of one
+// key phrase, indexed by Sentiment.ordinal(); higher scores rank first.
+enum AspectRanking {
+    POSITIVE {
+        @Override
+        double score(int[] counts) {
+            return counts[Sentiment.POSITIVE.ordinal()];
+        }
+    },
+    NEGATIVE {
+        @Override
+        double score(int[] counts) {
+            return counts[Sentiment.NEGATIVE.ordinal()];
+        }
+    },
+    NET {
+        @Override
+        double score(int[] counts) {
+            return counts[Sentiment.POSITIVE.ordinal()] - counts[Sentiment.NEGATIVE.ordinal()];
+        }
+    },
+    VOLUME {
+        @Override
+        double score(int[] counts) {
+            long volume = 0;
+            for (int count : counts) {
+                volume += count;
+            }
+            return volume;
+        }
+    },
+    // Lower bound of the 95% Wilson score interval for the share of positive among polar mentions, so an aspect
+    // praised in 40 of 50 reviews outranks one praised in the single review that mentions it.
+    WILSON {
+        @Override
+        double score(int[] counts) {
+            double positive = counts[Sentiment.POSITIVE.ordinal()];
+            double total = positive + counts[Sentiment.NEGATIVE.ordinal()];
+            return total <= 0 ? 0 : WilsonInterval.of(positive, total, WilsonInterval.Z_95).low();
+        }
+    };
+
+    abstract double score(int[] counts);
+}
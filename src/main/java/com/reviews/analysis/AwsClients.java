@@ -0,0 +1,108 @@
+package com.reviews.analysis;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.comprehend.AmazonComprehend;
+import com.amazonaws.services.comprehend.AmazonComprehendClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.document.DynamoDB;
+
+// Clients are built once per container and shared by every invocation (and every handler) that runs in it.
+final class AwsClients {
+
+    private static final int MAX_CONNECTIONS = AnalysisConfig.getInt("AWS_MAX_CONNECTIONS", 50);
+    private static final int CONNECTION_TIMEOUT_MILLIS = AnalysisConfig.getInt("AWS_CONNECTION_TIMEOUT_MILLIS", 2_000);
+    private static final int SOCKET_TIMEOUT_MILLIS = AnalysisConfig.getInt("AWS_SOCKET_TIMEOUT_MILLIS", 10_000);
+    private static final int REQUEST_TIMEOUT_MILLIS = AnalysisConfig.getInt("AWS_REQUEST_TIMEOUT_MILLIS", 15_000);
+    private static final long CONNECTION_MAX_IDLE_MILLIS = AnalysisConfig.getLong("AWS_CONNECTION_MAX_IDLE_MILLIS", 60_000);
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = AnalysisConfig.getInt("AWS_VALIDATE_AFTER_INACTIVITY_MILLIS", 5_000);
+    private static final boolean TCP_KEEP_ALIVE = AnalysisConfig.getBoolean("AWS_TCP_KEEP_ALIVE", true);
+
+    private static volatile AmazonDynamoDB dynamoDBClient;
+    private static volatile DynamoDB dynamoDB;
+    private static volatile AmazonComprehend comprehendClient;
+    private static volatile boolean unhealthy;
+
+    private AwsClients() {
+    }
+
+    static AmazonDynamoDB dynamoDBClient() {
+        AmazonDynamoDB client = dynamoDBClient;
+        if (client == null) {
+            synchronized (AwsClients.class) {
+                client = dynamoDBClient;
+                if (client == null) {
+                    client = AmazonDynamoDBClientBuilder.standard()
+                            .withClientConfiguration(clientConfiguration())
+                            .build();
+                    dynamoDB = new DynamoDB(client);
+                    dynamoDBClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    static DynamoDB dynamoDB() {
+        dynamoDBClient();
+        return dynamoDB;
+    }
+
+    static AmazonComprehend comprehend() {
+        AmazonComprehend client = comprehendClient;
+        if (client == null) {
+            synchronized (AwsClients.class) {
+                client = comprehendClient;
+                if (client == null) {
+                    client = AmazonComprehendClientBuilder.standard()
+                            .withClientConfiguration(clientConfiguration())
+                            .build();
+                    comprehendClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    // A client-side failure (connection reset, DNS, pool exhaustion) marks the shared clients as unhealthy,
+    // so the next invocation starts from fresh connection pools instead of reusing broken ones. The clients are
+    // only replaced by resetIfUnhealthy(): other products of the same invocation may still be using them.
+    static void reportFailure(Throwable failure) {
+        if (failure instanceof SdkClientException && !(failure instanceof AmazonServiceException)) {
+            unhealthy = true;
+        }
+    }
+
+    // Handlers call this once their invocation is done with the clients.
+    static void resetIfUnhealthy() {
+        if (unhealthy) {
+            reset();
+        }
+    }
+
+    private static synchronized void reset() {
+        unhealthy = false;
+        if (dynamoDBClient != null) {
+            dynamoDBClient.shutdown();
+            dynamoDBClient = null;
+            dynamoDB = null;
+        }
+        if (comprehendClient != null) {
+            comprehendClient.shutdown();
+            comprehendClient = null;
+        }
+    }
+
+    private static ClientConfiguration clientConfiguration() {
+        return new ClientConfiguration()
+                .withMaxConnections(MAX_CONNECTIONS)
+                .withConnectionTimeout(CONNECTION_TIMEOUT_MILLIS)
+                .withSocketTimeout(SOCKET_TIMEOUT_MILLIS)
+                .withRequestTimeout(REQUEST_TIMEOUT_MILLIS)
+                .withConnectionMaxIdleMillis(CONNECTION_MAX_IDLE_MILLIS)
+                .withValidateAfterInactivityMillis(VALIDATE_AFTER_INACTIVITY_MILLIS)
+                .withTcpKeepAlive(TCP_KEEP_ALIVE);
+    }
+}
@@ -0,0 +1,39 @@
+package com.reviews.analysis;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Capped exponential backoff with jitter between the attempts of a throttled or partially processed request,
+// so retries spread out instead of hitting an already overloaded service again at once.
+final class Backoff {
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    Backoff(long baseDelayMillis, long maxDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    // The delay before the given attempt, the second one being the first retry: a random point in the upper half
+    // of the exponentially growing ceiling.
+    long delayMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 2, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    // Sleeps before the given attempt. Returns false, without sleeping, when the attempt could not start before the
+    // deadline, and when interrupted, with the interrupt flag kept for the caller's own checks.
+    boolean awaitAttempt(int attempt, long deadlineMillis) {
+        long delayMillis = delayMillis(attempt);
+        if (deadlineMillis != Long.MAX_VALUE && System.currentTimeMillis() + delayMillis >= deadlineMillis) {
+            return false;
+        }
+        try {
+            Thread.sleep(delayMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.reviews.analysis;
+
+record CacheCounters(String tier, long hits, long misses, long evictions) {
+
+    @Override
+    public String toString() {
+        return String.format("%s_hits=%d %s_misses=%d %s_evictions=%d", tier, hits, tier, misses, tier, evictions);
+    }
+}
@@ -0,0 +1,127 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.comprehend.AmazonComprehend;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesItemResult;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesRequest;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesResult;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentItemResult;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentRequest;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentResult;
+import com.amazonaws.services.comprehend.model.BatchItemError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+// Sends texts to the Comprehend batch APIs in groups of up to 25 documents and maps every per-document
+// result back to the position of its text in the input list. Documents that could not be analyzed are left null.
+final class ComprehendBatchClient {
+
+    static final int MAX_BATCH_SIZE = 25;
+
+    static final int MAX_ATTEMPTS = AnalysisConfig.getInt("COMPREHEND_BATCH_MAX_ATTEMPTS", 3);
+    static final Backoff RETRY_BACKOFF = new Backoff(AnalysisConfig.getLong("COMPREHEND_RETRY_BASE_DELAY_MILLIS", 100),
+            AnalysisConfig.getLong("COMPREHEND_RETRY_MAX_DELAY_MILLIS", 2_000));
+    private static final Set<String> PERMANENT_ERRORS = Set.of("TEXT_SIZE_LIMIT_EXCEEDED", "INVALID_REQUEST", "UNSUPPORTED_LANGUAGE");
+
+    private final AmazonComprehend comprehend;
+    private final String languageCode;
+
+    ComprehendBatchClient(AmazonComprehend comprehend, String languageCode) {
+        this.comprehend = comprehend;
+        this.languageCode = languageCode;
+    }
+
+    List<BatchDetectSentimentItemResult> detectSentiment(List<String> texts) {
+        return execute(texts, batch -> {
+            BatchDetectSentimentResult result = comprehend.batchDetectSentiment(new BatchDetectSentimentRequest()
+                    .withTextList(batch)
+                    .withLanguageCode(languageCode));
+            return new BatchOutcome<>(result.getResultList(), result.getErrorList());
+        }, BatchDetectSentimentItemResult::getIndex);
+    }
+
+    List<BatchDetectKeyPhrasesItemResult> detectKeyPhrases(List<String> texts) {
+        return execute(texts, batch -> {
+            BatchDetectKeyPhrasesResult result = comprehend.batchDetectKeyPhrases(new BatchDetectKeyPhrasesRequest()
+                    .withTextList(batch)
+                    .withLanguageCode(languageCode));
+            return new BatchOutcome<>(result.getResultList(), result.getErrorList());
+        }, BatchDetectKeyPhrasesItemResult::getIndex);
+    }
+
+    private <R> List<R> execute(List<String> texts, Function<List<String>, BatchOutcome<R>> call, ToIntFunction<R> indexOf) {
+        List<R> results = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        List<Integer> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            batch.add(i);
+            if (batch.size() == MAX_BATCH_SIZE) {
+                executeBatch(texts, batch, call, indexOf, results);
+                batch = new ArrayList<>(MAX_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            executeBatch(texts, batch, call, indexOf, results);
+        }
+        return results;
+    }
+
+    private <R> void executeBatch(List<String> texts, List<Integer> positions, Function<List<String>, BatchOutcome<R>> call,
+                                  ToIntFunction<R> indexOf, List<R> results) {
+        List<Integer> pending = positions;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                backOff(attempt);
+            }
+            List<String> batch = new ArrayList<>(pending.size());
+            for (int position : pending) {
+                batch.add(texts.get(position));
+            }
+
+            BatchOutcome<R> outcome;
+            InvocationMetrics.requestStarted();
+            try {
+                outcome = call.apply(batch);
+            } finally {
+                InvocationMetrics.requestFinished();
+            }
+            pending = collect(pending, outcome.items(), indexOf, outcome.errors(), BatchItemError::getIndex, BatchItemError::getErrorCode, results);
+        }
+    }
+
+    // Files the results of one attempt, whose documents are the texts at the pending positions, under those
+    // positions and returns the positions whose documents failed in a way worth retrying. Shared with the async
+    // engine, whose SDK has its own result and error types.
+    static <R, E> List<Integer> collect(List<Integer> pending, List<R> items, ToIntFunction<R> indexOf, List<E> errors,
+                                        ToIntFunction<E> errorIndexOf, Function<E, String> errorCodeOf, List<R> results) {
+        for (R item : items) {
+            results.set(pending.get(indexOf.applyAsInt(item)), item);
+        }
+        List<Integer> failed = new ArrayList<>();
+        for (E error : errors) {
+            if (!PERMANENT_ERRORS.contains(errorCodeOf.apply(error))) {
+                failed.add(pending.get(errorIndexOf.applyAsInt(error)));
+            }
+        }
+        return failed;
+    }
+
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(RETRY_BACKOFF.delayMillis(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying Comprehend batch", e);
+        }
+    }
+
+    private record BatchOutcome<R>(List<R> items, List<BatchItemError> errors) {
+    }
+}
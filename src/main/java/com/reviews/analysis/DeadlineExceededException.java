@@ -0,0 +1,12 @@
+package com.reviews.analysis;
+
+// Thrown when analysis work is abandoned because the invocation's deadline was reached. Work merged before the
+// deadline is intact, so callers can finish with a partial result instead of failing.
+final class DeadlineExceededException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException(String message) {
+        super(message);
+    }
+}
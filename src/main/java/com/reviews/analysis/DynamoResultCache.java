@@ -0,0 +1,127 @@
+package com.reviews.analysis;
+
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Review results shared by every container, stored one item per content hash in their own DynamoDB table.
+// Cache failures never fail an analysis: unreadable entries are treated as misses and unwritten ones are dropped.
+final class DynamoResultCache implements ResultCache {
+
+    static final String CACHE_TABLE = AnalysisConfig.getString("REVIEW_CACHE_TABLE", "ReviewAnalysisCache");
+
+    private static final int MAX_GET_BATCH_SIZE = 100;
+    private static final int MAX_WRITE_BATCH_SIZE = 25;
+    private static final int MAX_ATTEMPTS = AnalysisConfig.getInt("REVIEW_CACHE_MAX_ATTEMPTS", 3);
+    private static final Backoff RETRY_BACKOFF = new Backoff(AnalysisConfig.getLong("REVIEW_CACHE_RETRY_BASE_DELAY_MILLIS", 50),
+            AnalysisConfig.getLong("REVIEW_CACHE_RETRY_MAX_DELAY_MILLIS", 1_000));
+    private static final long TTL_SECONDS = Duration.ofDays(AnalysisConfig.getLong("REVIEW_CACHE_TTL_DAYS", 90)).toSeconds();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private final AmazonDynamoDB dynamoDB;
+    private final long deadlineMillis;
+
+    // Unprocessed keys and items are retried with backoff, but never past the invocation's deadline.
+    DynamoResultCache(AmazonDynamoDB dynamoDB, long deadlineMillis) {
+        this.dynamoDB = dynamoDB;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    @Override
+    public Map<String, ReviewResult> getAll(Collection<String> keys) {
+        Map<String, ReviewResult> results = new HashMap<>();
+        List<String> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        for (int start = 0; start < distinctKeys.size(); start += MAX_GET_BATCH_SIZE) {
+            List<Map<String, AttributeValue>> requestKeys = new ArrayList<>();
+            for (String key : distinctKeys.subList(start, Math.min(start + MAX_GET_BATCH_SIZE, distinctKeys.size()))) {
+                requestKeys.add(Map.of("content_hash", new AttributeValue(key)));
+            }
+            Map<String, KeysAndAttributes> pending = Map.of(CACHE_TABLE, new KeysAndAttributes().withKeys(requestKeys));
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                if (attempt > 1 && !RETRY_BACKOFF.awaitAttempt(attempt, deadlineMillis)) {
+                    break;
+                }
+                BatchGetItemResult response;
+                InvocationMetrics.requestStarted();
+                try {
+                    response = dynamoDB.batchGetItem(new BatchGetItemRequest().withRequestItems(pending));
+                } catch (SdkClientException e) {
+                    break;
+                } finally {
+                    InvocationMetrics.requestFinished();
+                }
+                for (Map<String, AttributeValue> item : response.getResponses().getOrDefault(CACHE_TABLE, List.of())) {
+                    results.put(item.get("content_hash").getS(), fromItem(item));
+                }
+                pending = response.getUnprocessedKeys() == null ? Map.of() : response.getUnprocessedKeys();
+            }
+        }
+        HITS.addAndGet(results.size());
+        MISSES.addAndGet(distinctKeys.size() - results.size());
+        return results;
+    }
+
+    @Override
+    public void putAll(Map<String, ReviewResult> results) {
+        List<WriteRequest> writes = new ArrayList<>(results.size());
+        long expiresAt = System.currentTimeMillis() / 1000 + TTL_SECONDS;
+        results.forEach((key, result) -> writes.add(new WriteRequest(new PutRequest(toItem(key, result, expiresAt)))));
+
+        for (int start = 0; start < writes.size(); start += MAX_WRITE_BATCH_SIZE) {
+            Map<String, List<WriteRequest>> pending = Map.of(CACHE_TABLE, writes.subList(start, Math.min(start + MAX_WRITE_BATCH_SIZE, writes.size())));
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+                if (attempt > 1 && !RETRY_BACKOFF.awaitAttempt(attempt, deadlineMillis)) {
+                    break;
+                }
+                BatchWriteItemResult response;
+                InvocationMetrics.requestStarted();
+                try {
+                    response = dynamoDB.batchWriteItem(new BatchWriteItemRequest().withRequestItems(pending));
+                } catch (SdkClientException e) {
+                    break;
+                } finally {
+                    InvocationMetrics.requestFinished();
+                }
+                pending = response.getUnprocessedItems() == null ? Map.of() : response.getUnprocessedItems();
+            }
+        }
+    }
+
+    @Override
+    public List<CacheCounters> counters() {
+        return List.of(new CacheCounters("dynamodb", HITS.get(), MISSES.get(), 0));
+    }
+
+    private static Map<String, AttributeValue> toItem(String key, ReviewResult result, long expiresAt) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("content_hash", new AttributeValue(key));
+        item.put("sentiment", new AttributeValue(result.sentiment().name()));
+        item.put("confidence", new AttributeValue().withN(Double.toString(result.confidence())));
+        item.put("key_phrases", new AttributeValue().withL(result.keyPhrases().stream().map(AttributeValue::new).toList()));
+        item.put("expires_at", new AttributeValue().withN(Long.toString(expiresAt)));
+        return item;
+    }
+
+    private static ReviewResult fromItem(Map<String, AttributeValue> item) {
+        List<String> keyPhrases = item.get("key_phrases").getL().stream().map(AttributeValue::getS).toList();
+        return new ReviewResult(Sentiment.valueOf(item.get("sentiment").getS()), Double.parseDouble(item.get("confidence").getN()), keyPhrases);
+    }
+}
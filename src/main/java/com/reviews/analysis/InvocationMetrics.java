@@ -0,0 +1,53 @@
+package com.reviews.analysis;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-invocation process CPU time and remote request concurrency, so the synchronous and asynchronous engines
+// can be compared on the same traffic.
+final class InvocationMetrics {
+
+    private static volatile InvocationMetrics current = new InvocationMetrics();
+
+    private final long startCpuNanos = processCpuNanos();
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+
+    static InvocationMetrics begin() {
+        InvocationMetrics metrics = new InvocationMetrics();
+        current = metrics;
+        return metrics;
+    }
+
+    static void requestStarted() {
+        InvocationMetrics metrics = current;
+        metrics.requests.incrementAndGet();
+        metrics.peakInFlight.accumulateAndGet(metrics.inFlight.incrementAndGet(), Math::max);
+    }
+
+    static void requestFinished() {
+        current.inFlight.decrementAndGet();
+    }
+
+    String summary(String engine) {
+        long cpuNanos = processCpuNanos();
+        return String.format("engine=%s cpu_ms=%d wall_ms=%d requests=%d peak_in_flight=%d",
+                engine,
+                cpuNanos < 0 || startCpuNanos < 0 ? -1 : (cpuNanos - startCpuNanos) / 1_000_000,
+                (System.nanoTime() - startNanos) / 1_000_000,
+                requests.get(),
+                peakInFlight.get());
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean osBean) {
+            return osBean.getProcessCpuTime();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,259 @@
+package com.reviews.analysis;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Space-Saving heavy-hitter summary of key phrase frequencies in O(capacity) memory, whatever the number of
+// distinct phrases. Every monitored phrase keeps an upper bound on its true count and the overestimation error
+// of that bound; a phrase whose true count exceeds total / capacity is always monitored. Summaries combine with
+// merge() following the mergeable-summaries construction, so partitions can be sketched independently.
+//
+// Counters are also kept in a min-heap on their count, indexed by phrase, so finding the counter to evict and
+// moving a counter after an update take O(log capacity) rather than a scan of every counter.
+//
+// Occurrences offered with a sentiment are also tallied per sentiment. Those tallies only cover the time a phrase
+// was monitored, so they are lower bounds, and exact for phrases that never dropped out.
+final class KeyPhraseSketch {
+
+    // Higher counts rank first, then smaller errors, then the alphabetically first phrase.
+    private static final Comparator<Map.Entry<String, Counter>> RANKING =
+            Comparator.<Map.Entry<String, Counter>>comparingLong(e -> e.getValue().count)
+                    .thenComparing(e -> e.getValue().error, Comparator.reverseOrder())
+                    .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private Counter[] heap;
+
+    KeyPhraseSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Sketch capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[Math.min(capacity, 1_024)];
+    }
+
+    void offer(String phrase) {
+        counterFor(phrase);
+    }
+
+    void offer(String phrase, Sentiment sentiment) {
+        counterFor(phrase).sentiments[sentiment.ordinal()]++;
+    }
+
+    // Best effort inverse of offer(): a phrase that was evicted in the meantime is no longer tracked.
+    void retract(String phrase) {
+        retract(phrase, null);
+    }
+
+    void retract(String phrase, Sentiment sentiment) {
+        Counter counter = counters.get(phrase);
+        if (counter == null) {
+            return;
+        }
+        counter.count--;
+        counter.error = Math.min(counter.error, counter.count);
+        if (sentiment != null && counter.sentiments[sentiment.ordinal()] > 0) {
+            counter.sentiments[sentiment.ordinal()]--;
+        }
+        if (counter.count > 0) {
+            siftUp(counter.heapIndex);
+        } else {
+            counters.remove(phrase);
+            removeFromHeap(counter.heapIndex);
+        }
+    }
+
+    KeyPhraseSketch merge(KeyPhraseSketch other) {
+        long thisMinimum = minimumCount();
+        long otherMinimum = other.minimumCount();
+        Map<String, Counter> merged = new HashMap<>(counters.size() + other.counters.size());
+        counters.forEach((phrase, counter) -> {
+            Counter otherCounter = other.counters.get(phrase);
+            merged.put(phrase, otherCounter != null
+                    ? new Counter(counter.count + otherCounter.count, counter.error + otherCounter.error, counter.sentiments, otherCounter.sentiments)
+                    : new Counter(counter.count + otherMinimum, counter.error + otherMinimum, counter.sentiments));
+        });
+        other.counters.forEach((phrase, counter) -> {
+            if (!counters.containsKey(phrase)) {
+                merged.put(phrase, new Counter(counter.count + thisMinimum, counter.error + thisMinimum, counter.sentiments));
+            }
+        });
+
+        List<Map.Entry<String, Counter>> kept = TopSelection.greatest(merged.entrySet(), capacity, RANKING);
+        counters.clear();
+        heap = new Counter[Math.max(heap.length, kept.size())];
+        for (Map.Entry<String, Counter> entry : kept) {
+            insert(entry.getKey(), entry.getValue());
+        }
+        return this;
+    }
+
+    List<String> top(int k) {
+        return TopSelection.greatest(counters.entrySet(), k, RANKING).stream()
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // The per-sentiment tallies of the monitored phrases that have any, indexed by Sentiment.ordinal().
+    Map<String, int[]> sentimentTallies() {
+        Map<String, int[]> tallies = new HashMap<>(counters.size() * 2);
+        counters.forEach((phrase, counter) -> {
+            for (int count : counter.sentiments) {
+                if (count > 0) {
+                    tallies.put(phrase, counter.sentiments.clone());
+                    break;
+                }
+            }
+        });
+        return tallies;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(counters.size());
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().count);
+            out.writeLong(entry.getValue().error);
+            for (int count : entry.getValue().sentiments) {
+                out.writeInt(count);
+            }
+        }
+    }
+
+    // The sketch is read at the capacity it was written with, so stored summaries keep their error guarantees
+    // when the configured capacity changes; the next merge into a fresh aggregate adopts the new capacity.
+    static KeyPhraseSketch readFrom(DataInput in) throws IOException {
+        KeyPhraseSketch sketch = new KeyPhraseSketch(in.readInt());
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String phrase = in.readUTF();
+            Counter counter = new Counter(in.readLong(), in.readLong());
+            for (int sentiment = 0; sentiment < Sentiment.COUNT; sentiment++) {
+                counter.sentiments[sentiment] = in.readInt();
+            }
+            sketch.insert(phrase, counter);
+        }
+        return sketch;
+    }
+
+    // Space-Saving update: a newcomer replacing the minimum inherits its count as the error.
+    private Counter counterFor(String phrase) {
+        Counter counter = counters.get(phrase);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.heapIndex);
+        } else if (counters.size() < capacity) {
+            counter = new Counter(1, 0);
+            insert(phrase, counter);
+        } else {
+            // The newcomer takes over the minimum's slot with that count as its error: it may have been seen that
+            // often unmonitored.
+            Counter minimum = heap[0];
+            counters.remove(minimum.phrase);
+            counter = new Counter(minimum.count + 1, minimum.count);
+            counter.phrase = phrase;
+            counter.heapIndex = 0;
+            heap[0] = counter;
+            counters.put(phrase, counter);
+            siftDown(0);
+        }
+        return counter;
+    }
+
+    // Phrases outside the sketch may each have been seen up to this many times.
+    private long minimumCount() {
+        return counters.size() < capacity ? 0 : heap[0].count;
+    }
+
+    private void insert(String phrase, Counter counter) {
+        int index = counters.size();
+        if (index == heap.length) {
+            heap = Arrays.copyOf(heap, Math.min(capacity, heap.length * 2));
+        }
+        counter.phrase = phrase;
+        counters.put(phrase, counter);
+        place(counter, index);
+        siftUp(index);
+    }
+
+    // The heap holds exactly the monitored counters, so its size is counters.size().
+    private void removeFromHeap(int index) {
+        int last = counters.size();
+        Counter moved = heap[last];
+        heap[last] = null;
+        if (index < last) {
+            place(moved, index);
+            siftDown(index);
+            siftUp(moved.heapIndex);
+        }
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int size = counters.size();
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.heapIndex = index;
+    }
+
+    private static final class Counter {
+        private long count;
+        private long error;
+        private final int[] sentiments = new int[Sentiment.COUNT];
+        private String phrase;
+        private int heapIndex;
+
+        private Counter(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+
+        private Counter(long count, long error, int[]... sentimentTallies) {
+            this(count, error);
+            for (int[] tallies : sentimentTallies) {
+                for (int sentiment = 0; sentiment < Sentiment.COUNT; sentiment++) {
+                    sentiments[sentiment] += tallies[sentiment];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.reviews.analysis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// Bounded on-heap tier; Caffeine's W-TinyLFU policy keeps the reviews of frequently analyzed products resident.
+final class LocalResultCache implements ResultCache {
+
+    private final Cache<String, ReviewResult> cache;
+
+    LocalResultCache(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Map<String, ReviewResult> getAll(Collection<String> keys) {
+        return cache.getAllPresent(keys);
+    }
+
+    @Override
+    public void putAll(Map<String, ReviewResult> results) {
+        cache.putAll(results);
+    }
+
+    @Override
+    public List<CacheCounters> counters() {
+        CacheStats stats = cache.stats();
+        return List.of(new CacheCounters("heap", stats.hitCount(), stats.missCount(), stats.evictionCount()));
+    }
+}
@@ -0,0 +1,190 @@
+package com.reviews.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Memory-mapped open-addressing table under /tmp: it is far larger than the heap tier and lives as long as the
+// execution environment, across every warm invocation of the container. Every slot holds one entry: a used flag,
+// the 32-byte content hash and the encoded result. Results that do not fit in a slot are not stored in this tier.
+//
+// The file outlives invocations that time out mid-write, so a slot is only marked used once its payload is in
+// place, and a slot that still fails to decode counts as a miss.
+final class MappedFileResultCache implements ResultCache {
+
+    private static final int MAGIC = 0x52524332;
+    private static final int HEADER_SIZE = 16;
+    private static final int KEY_SIZE = 32;
+    private static final int SLOT_HEADER_SIZE = 1 + KEY_SIZE + 2;
+    private static final int MAX_PROBES = 8;
+
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private MappedFileResultCache(MappedByteBuffer buffer, int slotCount, int slotSize) {
+        this.buffer = buffer;
+        this.slotCount = slotCount;
+        this.slotSize = slotSize;
+    }
+
+    static MappedFileResultCache open(Path file, int slotCount, int slotSize) throws IOException {
+        long size = HEADER_SIZE + (long) slotCount * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Result cache file cannot exceed 2 GiB");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Slots written under another format or geometry cannot be read back: the file is emptied so that mapping
+            // it again zero-fills every slot, and the magic goes in last so a file only has it once it is usable.
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (channel.size() != size || header.getInt(0) != MAGIC || header.getInt(4) != slotCount || header.getInt(8) != slotSize) {
+                channel.truncate(0);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                buffer.putInt(4, slotCount);
+                buffer.putInt(8, slotSize);
+                buffer.putInt(0, MAGIC);
+            }
+            return new MappedFileResultCache(buffer, slotCount, slotSize);
+        }
+    }
+
+    @Override
+    public Map<String, ReviewResult> getAll(Collection<String> keys) {
+        Map<String, ReviewResult> results = new HashMap<>();
+        for (String key : keys) {
+            ReviewResult result = get(HexFormat.of().parseHex(key));
+            if (result != null) {
+                results.put(key, result);
+            }
+        }
+        hits.addAndGet(results.size());
+        misses.addAndGet(keys.size() - results.size());
+        return results;
+    }
+
+    @Override
+    public void putAll(Map<String, ReviewResult> results) {
+        results.forEach((key, result) -> {
+            byte[] payload = encode(result);
+            if (payload.length <= slotSize - SLOT_HEADER_SIZE) {
+                put(HexFormat.of().parseHex(key), payload);
+            }
+        });
+    }
+
+    @Override
+    public List<CacheCounters> counters() {
+        return List.of(new CacheCounters("tmp", hits.get(), misses.get(), evictions.get()));
+    }
+
+    private synchronized ReviewResult get(byte[] key) {
+        int home = homeSlot(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int offset = slotOffset((home + probe) % slotCount);
+            if (buffer.get(offset) == 0) {
+                return null;
+            }
+            if (keyMatches(offset, key)) {
+                try {
+                    byte[] payload = new byte[Short.toUnsignedInt(buffer.getShort(offset + 1 + KEY_SIZE))];
+                    buffer.get(offset + SLOT_HEADER_SIZE, payload);
+                    return decode(payload);
+                } catch (RuntimeException e) {
+                    buffer.put(offset, (byte) 0);
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized void put(byte[] key, byte[] payload) {
+        int home = homeSlot(key);
+        int target = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) % slotCount;
+            int offset = slotOffset(slot);
+            if (buffer.get(offset) == 0 || keyMatches(offset, key)) {
+                target = slot;
+                break;
+            }
+        }
+        if (target < 0) {
+            target = home;
+            evictions.incrementAndGet();
+        }
+
+        int offset = slotOffset(target);
+        buffer.put(offset, (byte) 0);
+        buffer.put(offset + 1, key);
+        buffer.putShort(offset + 1 + KEY_SIZE, (short) payload.length);
+        buffer.put(offset + SLOT_HEADER_SIZE, payload);
+        buffer.put(offset, (byte) 1);
+    }
+
+    private boolean keyMatches(int offset, byte[] key) {
+        for (int i = 0; i < KEY_SIZE; i++) {
+            if (buffer.get(offset + 1 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int homeSlot(byte[] key) {
+        return (int) Long.remainderUnsigned(ByteBuffer.wrap(key).getLong(), slotCount);
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private static byte[] encode(ReviewResult result) {
+        List<byte[]> phrases = new ArrayList<>(result.keyPhrases().size());
+        int size = 1 + Double.BYTES + Short.BYTES;
+        for (String phrase : result.keyPhrases()) {
+            byte[] bytes = phrase.getBytes(StandardCharsets.UTF_8);
+            phrases.add(bytes);
+            size += Short.BYTES + bytes.length;
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(size);
+        encoded.put((byte) result.sentiment().ordinal());
+        encoded.putDouble(result.confidence());
+        encoded.putShort((short) phrases.size());
+        for (byte[] phrase : phrases) {
+            encoded.putShort((short) phrase.length).put(phrase);
+        }
+        return encoded.array();
+    }
+
+    private static ReviewResult decode(byte[] payload) {
+        ByteBuffer encoded = ByteBuffer.wrap(payload);
+        Sentiment sentiment = Sentiment.VALUES[encoded.get()];
+        double confidence = encoded.getDouble();
+        int phraseCount = Short.toUnsignedInt(encoded.getShort());
+        List<String> keyPhrases = new ArrayList<>(phraseCount);
+        for (int i = 0; i < phraseCount; i++) {
+            byte[] phrase = new byte[Short.toUnsignedInt(encoded.getShort())];
+            encoded.get(phrase);
+            keyPhrases.add(new String(phrase, StandardCharsets.UTF_8));
+        }
+        return new ReviewResult(sentiment, confidence, keyPhrases);
+    }
+}
@@ -0,0 +1,93 @@
+package com.reviews.analysis;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Drains remote, paged sources on background virtual threads, so the next pages are already being fetched while
+// the caller works on the current one. Several sources are read concurrently, one thread each, and their pages
+// are interleaved in arrival order. At most bufferSize pages wait in memory: once the buffer is full the readers
+// block until the caller catches up. A failure of any source is rethrown by the caller's next().
+final class PrefetchingIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private final BlockingQueue<Slot<T>> buffer;
+    private final List<Thread> readers;
+    private volatile boolean closed;
+    private int finishedReaders;
+    private Slot<T> next;
+
+    PrefetchingIterator(List<? extends Iterator<T>> sources, int bufferSize) {
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("At least one source is required");
+        }
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.readers = new ArrayList<>(sources.size());
+        for (Iterator<T> source : sources) {
+            readers.add(Thread.ofVirtual().name("review-prefetch-", readers.size()).start(() -> drain(source)));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            try {
+                next = buffer.take();
+            } catch (InterruptedException e) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the next page", e);
+            }
+            // The end of one source only ends the iteration once every other source has ended too.
+            if (next.end() && next.failure() == null && ++finishedReaders < readers.size()) {
+                next = null;
+            }
+        }
+        if (next.failure() != null) {
+            throw next.failure();
+        }
+        return !next.end();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T item = next.item();
+        next = null;
+        return item;
+    }
+
+    // Stops the readers when the caller gives up early; pages still buffered are dropped.
+    @Override
+    public void close() {
+        closed = true;
+        readers.forEach(Thread::interrupt);
+        buffer.clear();
+    }
+
+    private void drain(Iterator<T> source) {
+        try {
+            while (source.hasNext()) {
+                buffer.put(new Slot<>(source.next(), null, false));
+            }
+            buffer.put(new Slot<>(null, null, true));
+        } catch (InterruptedException e) {
+            // Closed by the caller.
+        } catch (RuntimeException e) {
+            if (!closed) {
+                try {
+                    buffer.put(new Slot<>(null, e, true));
+                } catch (InterruptedException interrupted) {
+                    // Closed by the caller.
+                }
+            }
+        }
+    }
+
+    private record Slot<T>(T item, RuntimeException failure, boolean end) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.reviews.analysis;
+
+import java.util.Map;
+
+// An alternative implementation of the fetch, analyze and store pipeline behind SentimentAnalysisLambda,
+// discovered through ServiceLoader so that it can be packaged separately.
+public interface ProductAnalysisEngine {
+
+    String name();
+
+    Map<String, Object> analyzeProduct(String productId, long deadlineMillis);
+}
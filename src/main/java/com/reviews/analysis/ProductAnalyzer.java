@@ -0,0 +1,514 @@
+package com.reviews.analysis;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import com.reviews.analysis.ReviewQuery.KeyRange;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+// Brings the stored analysis of products up to date: fresh results are served as they are, stored aggregates are
+// extended with the reviews past their watermark, and everything else is rebuilt from the reviews table.
+final class ProductAnalyzer {
+
+    private static final long RESULT_MAX_AGE_MILLIS = AnalysisConfig.getLong("RESULT_MAX_AGE_SECONDS", 3_600) * 1_000;
+    private static final int QUERY_PREFETCH_PAGES = AnalysisConfig.getInt("QUERY_PREFETCH_PAGES", 2);
+    private static final int QUERY_PARTITIONS = AnalysisConfig.getInt("QUERY_PARTITIONS", 1);
+    // Reviews of several products collected before they are analyzed together in shared Comprehend batches.
+    private static final int SHARED_BATCH_REVIEWS = AnalysisConfig.getInt("SHARED_BATCH_REVIEWS", 500);
+    // Zero disables checkpoints: progress is then only stored when the invocation finishes.
+    private static final long CHECKPOINT_INTERVAL_MILLIS = AnalysisConfig.getLong("CHECKPOINT_INTERVAL_SECONDS", 60) * 1_000;
+    private static final int SAMPLE_MAX_REVIEWS = AnalysisConfig.getInt("SAMPLE_MAX_REVIEWS", 10_000);
+    // Sampling never stops on fewer reviews than this, however narrow the intervals already look.
+    private static final int SAMPLE_MIN_REVIEWS = AnalysisConfig.getInt("SAMPLE_MIN_REVIEWS", 200);
+    private static final int SAMPLE_CHUNK_REVIEWS = AnalysisConfig.getInt("SAMPLE_CHUNK_REVIEWS", 250);
+
+    private final AmazonDynamoDB dynamoDBClient;
+    private final AnalysisStore analysisStore;
+    private final ReviewAnalyzer reviewAnalyzer;
+    private final long deadlineMillis;
+
+    ProductAnalyzer(AmazonDynamoDB dynamoDBClient, AnalysisStore analysisStore, ReviewAnalyzer reviewAnalyzer, long deadlineMillis) {
+        this.dynamoDBClient = dynamoDBClient;
+        this.analysisStore = analysisStore;
+        this.reviewAnalyzer = reviewAnalyzer;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    // Reviews past the watermark are only all the new ones when sort keys grow with insertion order. Otherwise, or
+    // when no watermark was stored because the reviews lack the sort key attribute, a stored aggregate cannot be
+    // extended without counting some reviews twice or missing others, and is rebuilt instead.
+    static boolean canExtend(Item storedAnalysis) {
+        return SentimentAnalysisLambda.SORT_KEY_TIME_ORDERED && storedAnalysis.hasAttribute("watermark");
+    }
+
+    // A stored analysis at a richer depth than requested also serves the request.
+    static boolean isFresh(Item storedAnalysis, AnalysisDepth depth) {
+        if (storedAnalysis == null || !storedAnalysis.hasAttribute("review_analysis") || !storedAnalysis.hasAttribute("computed_at")) {
+            return false;
+        }
+        if (!AnalysisStore.readDepth(storedAnalysis).includes(depth)) {
+            return false;
+        }
+        if (storedAnalysis.hasAttribute("continuation")) {
+            return false;
+        }
+        return System.currentTimeMillis() - storedAnalysis.getLong("computed_at") <= RESULT_MAX_AGE_MILLIS;
+    }
+
+    // A stored aggregate is extended with the reviews past its watermark instead of being rebuilt from scratch.
+    // Reviews edited or deleted below the watermark are only picked up by a force_refresh.
+    //
+    // A stored aggregate of a richer depth is extended at its own depth, so it keeps serving richer requests. One of
+    // a poorer depth is rebuilt at the requested depth, which finds the sentiment of the reviews analyzed before in
+    // the result cache and only detects their key phrases.
+    //
+    // Pages are only started while the budget allows, and a page counts once all of it is analyzed, so when time
+    // runs out the aggregate is exact for the pages it covers. That result is returned and stored flagged as
+    // partial, with the key ranges still to read as a continuation that the next call resumes from, provided the
+    // reviews carry the sort key those ranges are bounded by.
+    //
+    // Long runs also store that state as a checkpoint every CHECKPOINT_INTERVAL_SECONDS, tagged with the job ID of
+    // the run, so a crashed or timed-out invocation loses at most one interval. Checkpoints fall on page boundaries,
+    // which keeps resumed aggregates free of double counts, and the pages analyzed after the last checkpoint are
+    // served from the result cache when they are read again.
+    Map<String, Object> analyze(String productId, Item storedAnalysis, boolean forceRefresh, AnalysisDepth depth) {
+        ProductRun run = new ProductRun(productId, storedAnalysis, forceRefresh, depth);
+        AnalysisBudget budget = new AnalysisBudget(deadlineMillis);
+        Checkpoints checkpoints = new Checkpoints(run, storedAnalysis);
+        StreamedReviews streamed = streamReviews(productId, run.ranges(dynamoDBClient), reviews -> {
+            if (!budget.canStartPage()) {
+                return false;
+            }
+            long startedAt = System.currentTimeMillis();
+            ReviewAggregate page = new ReviewAggregate(run.aggregate.depth());
+            try {
+                reviewAnalyzer.analyze(reviews, budget.workDeadlineMillis(), page);
+            } catch (DeadlineExceededException e) {
+                return false;
+            }
+            run.aggregate.merge(page);
+            budget.pageFinished(startedAt);
+            return true;
+        }, checkpoints::afterPage);
+        if (streamed.reviewCount() == 0 && !run.incremental && streamed.remaining().isEmpty()) {
+            return Map.of("result", "Product not found!");
+        }
+
+        Map<String, Object> analysisResult = run.buildResult(streamed);
+        if (!checkpoints.superseded && streamed.storable()) {
+            // Losing the race against a concurrent writer is harmless: the next refresh continues from the winner's aggregate.
+            try {
+                analysisStore.save(run.toItem(analysisResult, streamed), checkpoints.stored);
+            } catch (AmazonServiceException e) {
+                // An item too large to store still leaves a valid result for this request.
+                if (!AnalysisStore.isItemTooLarge(e)) {
+                    throw e;
+                }
+            }
+        }
+        return analysisResult;
+    }
+
+    // Stores the progress of a run at most once per interval. Every checkpoint is a versioned write over the
+    // previous one; if another writer got in between, the run stops and leaves the product to the winner.
+    private final class Checkpoints {
+        private final ProductRun run;
+        private Item stored;
+        private long lastMillis = System.currentTimeMillis();
+        private boolean superseded;
+
+        private Checkpoints(ProductRun run, Item stored) {
+            this.run = run;
+            this.stored = stored;
+        }
+
+        private boolean afterPage(StreamedReviews progress) {
+            if (CHECKPOINT_INTERVAL_MILLIS <= 0 || progress.remaining().isEmpty() || !progress.storable()
+                    || System.currentTimeMillis() - lastMillis < CHECKPOINT_INTERVAL_MILLIS) {
+                return true;
+            }
+            Item checkpoint = run.toItem(run.buildResult(progress), progress);
+            try {
+                if (!analysisStore.save(checkpoint, stored)) {
+                    superseded = true;
+                    return false;
+                }
+            } catch (AmazonServiceException e) {
+                if (!AnalysisStore.isItemTooLarge(e)) {
+                    throw e;
+                }
+                return true;
+            }
+            stored = checkpoint;
+            lastMillis = System.currentTimeMillis();
+            return true;
+        }
+    }
+
+    // Estimates the sentiment percentages of a product from a uniform random sample of its reviews instead of
+    // analyzing all of them. The reviews are read once into a reservoir, and the sample is analyzed chunk by chunk
+    // until the 95% confidence interval of every percentage is within targetMargin percentage points either side,
+    // the reservoir is used up or the budget runs out. Intervals are Wilson score intervals with a finite population
+    // correction, so a sample covering every review yields the exact percentages. The estimate is returned only:
+    // it is never stored, neither as the product's analysis nor as the base of an incremental refresh.
+    //
+    // Reading stops once half of the budget's work time is used, leaving the rest for the analysis. The population
+    // is then the reviews read so far, which the estimate and its correction describe, and the result says so.
+    Map<String, Object> sample(String productId, double targetMargin, AnalysisDepth depth) {
+        AnalysisBudget budget = new AnalysisBudget(deadlineMillis);
+        long startedReadingAt = System.currentTimeMillis();
+        long readDeadlineMillis = budget.workDeadlineMillis() == Long.MAX_VALUE
+                ? Long.MAX_VALUE
+                : startedReadingAt + (budget.workDeadlineMillis() - startedReadingAt) / 2;
+        ReviewReservoir reservoir = new ReviewReservoir(SAMPLE_MAX_REVIEWS);
+        StreamedReviews read = streamReviews(productId, ReviewQuery.partition(dynamoDBClient, productId, null, QUERY_PARTITIONS), reviews -> {
+            if (System.currentTimeMillis() >= readDeadlineMillis) {
+                return false;
+            }
+            reviews.forEach(reservoir::offer);
+            return true;
+        }, progress -> true);
+        boolean populationComplete = read.remaining().isEmpty();
+        if (reservoir.population() == 0) {
+            return Map.of("result", populationComplete ? "Product not found!" : "Error: no reviews read before the deadline");
+        }
+
+        List<String> sample = reservoir.shuffled();
+        ReviewAggregate aggregate = new ReviewAggregate(depth);
+        Map<String, Object> intervals = Map.of();
+        boolean targetReached = false;
+        for (int next = 0; next < sample.size() && !targetReached && budget.canStartPage(); next += SAMPLE_CHUNK_REVIEWS) {
+            long startedAt = System.currentTimeMillis();
+            ReviewAggregate chunk = new ReviewAggregate(depth);
+            try {
+                reviewAnalyzer.analyze(sample.subList(next, Math.min(sample.size(), next + SAMPLE_CHUNK_REVIEWS)),
+                        budget.workDeadlineMillis(), chunk);
+            } catch (DeadlineExceededException e) {
+                break;
+            }
+            aggregate.merge(chunk);
+            budget.pageFinished(startedAt);
+
+            Map<String, Object> chunkIntervals = new LinkedHashMap<>();
+            double widestMargin = 0;
+            for (Sentiment sentiment : Sentiment.VALUES) {
+                WilsonInterval interval = WilsonInterval.ofSample(aggregate.sentimentCount(sentiment),
+                        aggregate.analyzedReviews(), reservoir.population(), WilsonInterval.Z_95);
+                chunkIntervals.put(sentiment.name(), Map.of("low", interval.low() * 100, "high", interval.high() * 100));
+                widestMargin = Math.max(widestMargin, interval.halfWidth() * 100);
+            }
+            intervals = chunkIntervals;
+            targetReached = widestMargin <= targetMargin
+                    && (aggregate.analyzedReviews() >= SAMPLE_MIN_REVIEWS || next + SAMPLE_CHUNK_REVIEWS >= sample.size());
+        }
+
+        Map<String, Object> analysisResult = aggregate.buildFinalResult();
+        analysisResult.put("sampling", Map.of(
+                "population", reservoir.population(),
+                "population_complete", populationComplete,
+                "sample_size", aggregate.analyzedReviews(),
+                "confidence_level", 0.95,
+                "target_margin", targetMargin,
+                "target_reached", targetReached,
+                "sentiment_intervals", intervals));
+        return analysisResult;
+    }
+
+    // Refreshes many products in one pass. Their reviews are pooled so that small products fill Comprehend batches
+    // together, and the results are written with BatchWriteItem. Every product maps to its analysis, or to an
+    // error result if it failed; a failure never affects the other products.
+    //
+    // Products are only started, and their pages only read, while the budget allows. Every time the pool has been
+    // analyzed, the products read completely before it are stored, so a timeout loses at most one pool of work. A
+    // product cut short by the budget is stored as partial with a continuation, as a single refresh would be, and
+    // the products never started are reported as not attempted.
+    Map<String, Map<String, Object>> analyzeAll(List<String> productIds, boolean forceRefresh, AnalysisDepth depth) {
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        Map<String, Item> storedResults = forceRefresh ? Map.of() : analysisStore.loadAll(productIds, true, deadlineMillis);
+        List<String> staleIds = new ArrayList<>();
+        for (String productId : productIds) {
+            Item storedResult = storedResults.get(productId);
+            if (!forceRefresh && isFresh(storedResult, depth)) {
+                results.put(productId, storedResult.getMap("review_analysis"));
+            } else {
+                staleIds.add(productId);
+            }
+        }
+        Map<String, Item> storedAnalyses = staleIds.isEmpty() ? Map.of() : analysisStore.loadAll(staleIds, false, deadlineMillis);
+        List<ProductRun> runs = new ArrayList<>();
+        for (String productId : staleIds) {
+            runs.add(new ProductRun(productId, storedAnalyses.get(productId), forceRefresh, depth));
+        }
+
+        AnalysisBudget budget = new AnalysisBudget(deadlineMillis);
+        List<TaggedReview> pending = new ArrayList<>();
+        // Products read completely whose reviews are still pooled or whose result is not stored yet.
+        List<ProductRun> unstored = new ArrayList<>();
+        Set<String> unwritten = new HashSet<>();
+        for (ProductRun run : runs) {
+            if (!budget.canStartPage()) {
+                break;
+            }
+            try {
+                run.streamed = streamReviews(run.productId, run.ranges(dynamoDBClient), reviews -> {
+                    if (!budget.canStartPage()) {
+                        return false;
+                    }
+                    for (String review : reviews) {
+                        pending.add(new TaggedReview(run, review));
+                    }
+                    if (pending.size() >= SHARED_BATCH_REVIEWS) {
+                        analyzePooled(pending, budget);
+                        unwritten.addAll(store(unstored, storedAnalyses));
+                    }
+                    return true;
+                }, progress -> true);
+            } catch (RuntimeException e) {
+                AwsClients.reportFailure(e);
+                run.failure = e;
+            }
+            unstored.add(run);
+        }
+        analyzePooled(pending, budget);
+        unwritten.addAll(store(unstored, storedAnalyses));
+
+        for (ProductRun run : runs) {
+            if (run.failure != null) {
+                results.put(run.productId, Map.of("result", "Error: " + run.failure.getMessage()));
+            } else if (run.result == null) {
+                results.put(run.productId, Map.of("result", "Error: not attempted before the deadline"));
+            } else if (unwritten.contains(run.productId)) {
+                results.put(run.productId, Map.of("result", "Error: analysis could not be stored"));
+            } else {
+                results.put(run.productId, run.result);
+            }
+        }
+        return results;
+    }
+
+    // Builds and stores the results of products whose reviews are all analyzed, and returns the ones that could not
+    // be written. A product stopped before its first page made no progress and is left as it was.
+    private Set<String> store(List<ProductRun> runs, Map<String, Item> storedAnalyses) {
+        List<Item> items = new ArrayList<>();
+        for (ProductRun run : runs) {
+            if (run.failure != null || (run.streamed.reviewCount() == 0 && !run.streamed.remaining().isEmpty())) {
+                continue;
+            }
+            if (run.streamed.reviewCount() == 0 && !run.incremental) {
+                run.result = Map.of("result", "Product not found!");
+            } else {
+                run.result = run.buildResult(run.streamed);
+                if (run.streamed.storable()) {
+                    items.add(run.toItem(run.result, run.streamed));
+                }
+            }
+        }
+        runs.clear();
+        return items.isEmpty() ? Set.of() : analysisStore.saveAll(items, storedAnalyses, deadlineMillis);
+    }
+
+    // A failure of a pooled analysis fails every product that had reviews in the pool. The pool is analyzed at the
+    // richest depth among its products; each product's aggregate only tallies what its own depth needs.
+    private void analyzePooled(List<TaggedReview> pending, AnalysisBudget budget) {
+        List<TaggedReview> reviews = pending.stream().filter(review -> review.run().failure == null).toList();
+        pending.clear();
+        if (reviews.isEmpty()) {
+            return;
+        }
+        AnalysisDepth depth = AnalysisDepth.SENTIMENT;
+        for (TaggedReview review : reviews) {
+            depth = review.run().aggregate.depth().includes(depth) ? review.run().aggregate.depth() : depth;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            reviewAnalyzer.analyze(reviews, TaggedReview::text, depth, budget.workDeadlineMillis(), (batch, batchResults) -> {
+                Map<ProductRun, ReviewAggregate> partials = new IdentityHashMap<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batchResults.get(i) != null) {
+                        TaggedReview review = batch.get(i);
+                        partials.computeIfAbsent(review.run(), run -> new ReviewAggregate(run.aggregate.depth())).add(batchResults.get(i), review.text().length());
+                    }
+                }
+                partials.forEach((run, partial) -> {
+                    synchronized (run.aggregate) {
+                        run.aggregate.merge(partial);
+                    }
+                });
+            });
+            budget.pageFinished(startedAt);
+        } catch (RuntimeException e) {
+            AwsClients.reportFailure(e);
+            for (TaggedReview review : reviews) {
+                review.run().failure = e;
+            }
+        }
+    }
+
+    // Each query page is handed to the sink as soon as it arrives and dropped afterwards, so the heap holds a few
+    // pages of review texts at a time instead of the whole product. The next pages are fetched in the background
+    // while the current one is analyzed; with several ranges, they are read concurrently and their pages arrive in
+    // no particular order. Reading stops when the sink declines a page, and the parts of the ranges that were not
+    // consumed are returned as remaining. After every consumed page, progress receives the state so far and may
+    // stop the reading as well.
+    private StreamedReviews streamReviews(String productId, List<KeyRange> ranges, Predicate<List<String>> sink,
+                                          Predicate<StreamedReviews> progress) {
+        List<Iterator<RangePage>> sources = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            int range = i;
+            Iterator<QueryResult> pages = ReviewQuery.pages(dynamoDBClient, productId, ranges.get(i));
+            sources.add(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return pages.hasNext();
+                }
+
+                @Override
+                public RangePage next() {
+                    List<Map<String, AttributeValue>> items = pages.next().getItems();
+                    return new RangePage(range, items, !pages.hasNext());
+                }
+            });
+        }
+
+        Object[] rangeProgress = new Object[ranges.size()];
+        boolean[] exhausted = new boolean[ranges.size()];
+        int reviewCount = 0;
+        Object lastSortKey = null;
+        boolean resumable = true;
+        try (PrefetchingIterator<RangePage> pages =
+                     new PrefetchingIterator<>(sources, Math.max(QUERY_PREFETCH_PAGES, sources.size()))) {
+            while (pages.hasNext()) {
+                RangePage page = pages.next();
+                List<String> reviews = new ArrayList<>(page.items().size());
+                Object pageSortKey = null;
+                boolean keyed = true;
+                for (Map<String, AttributeValue> item : page.items()) {
+                    reviews.add(ReviewQuery.reviewText(item));
+                    Object sortKey = ReviewQuery.sortKey(item);
+                    keyed &= sortKey != null;
+                    if (sortKey != null && (pageSortKey == null || ReviewQuery.compareSortKeys(sortKey, pageSortKey) > 0)) {
+                        pageSortKey = sortKey;
+                    }
+                }
+                if (!sink.test(reviews)) {
+                    break;
+                }
+                reviewCount += reviews.size();
+                resumable &= keyed;
+                exhausted[page.range()] = page.last();
+                if (pageSortKey != null) {
+                    rangeProgress[page.range()] = pageSortKey;
+                    if (lastSortKey == null || ReviewQuery.compareSortKeys(pageSortKey, lastSortKey) > 0) {
+                        lastSortKey = pageSortKey;
+                    }
+                }
+                if (!progress.test(new StreamedReviews(reviewCount, lastSortKey, remaining(ranges, rangeProgress, exhausted), resumable))) {
+                    break;
+                }
+            }
+        }
+        return new StreamedReviews(reviewCount, lastSortKey, remaining(ranges, rangeProgress, exhausted), resumable);
+    }
+
+    private static List<KeyRange> remaining(List<KeyRange> ranges, Object[] rangeProgress, boolean[] exhausted) {
+        List<KeyRange> remaining = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (!exhausted[i]) {
+                remaining.add(new KeyRange(rangeProgress[i] != null ? rangeProgress[i] : ranges.get(i).after(), ranges.get(i).upTo()));
+            }
+        }
+        return remaining;
+    }
+
+    // The state of one product while its reviews are read and analyzed.
+    private static final class ProductRun {
+        private final String productId;
+        private final boolean incremental;
+        private final ReviewAggregate aggregate;
+        private final Object watermark;
+        private final List<KeyRange> continuation;
+        private final String jobId;
+        private StreamedReviews streamed;
+        private Map<String, Object> result;
+        private volatile RuntimeException failure;
+
+        private ProductRun(String productId, Item storedAnalysis, boolean forceRefresh, AnalysisDepth depth) {
+            ReviewAggregate storedAggregate = forceRefresh ? null : AnalysisStore.readAggregate(storedAnalysis);
+            List<KeyRange> storedContinuation = storedAggregate != null ? AnalysisStore.readContinuation(storedAnalysis) : null;
+            this.productId = productId;
+            // An interrupted run is finished whatever the key order: its continuation ranges cover exactly the
+            // reviews it has not read.
+            this.incremental = storedAggregate != null && storedAggregate.depth().includes(depth)
+                    && (storedContinuation != null || canExtend(storedAnalysis));
+            this.aggregate = incremental ? storedAggregate : new ReviewAggregate(depth);
+            this.watermark = incremental ? storedAnalysis.get("watermark") : null;
+            this.continuation = incremental ? storedContinuation : null;
+            this.jobId = continuation != null && storedAnalysis.hasAttribute("job_id")
+                    ? storedAnalysis.getString("job_id")
+                    : UUID.randomUUID().toString();
+        }
+
+        // An interrupted run resumes its remaining ranges; otherwise everything past the watermark is read.
+        private List<KeyRange> ranges(AmazonDynamoDB dynamoDBClient) {
+            return continuation != null ? continuation : ReviewQuery.partition(dynamoDBClient, productId, watermark, QUERY_PARTITIONS);
+        }
+
+        private Map<String, Object> buildResult(StreamedReviews streamed) {
+            Map<String, Object> analysisResult = aggregate.buildFinalResult();
+            if (!streamed.remaining().isEmpty()) {
+                analysisResult.put("partial", true);
+                if (streamed.resumable()) {
+                    analysisResult.put("job_id", jobId);
+                }
+                analysisResult.put("coverage", Map.of(
+                        "analyzed_reviews", aggregate.analyzedReviews(),
+                        "reviews_this_invocation", streamed.reviewCount(),
+                        "remaining_ranges", streamed.remaining().size()));
+            }
+            return analysisResult;
+        }
+
+        // The watermark is the highest sort key analyzed so far. While ranges remain, reviews at or below it are not
+        // all analyzed yet: the continuation lists the ones still to read.
+        private Item toItem(Map<String, Object> analysisResult, StreamedReviews streamed) {
+            Object newWatermark = watermark;
+            if (streamed.lastSortKey() != null && (watermark == null || ReviewQuery.compareSortKeys(streamed.lastSortKey(), watermark) > 0)) {
+                newWatermark = streamed.lastSortKey();
+            }
+            Item item = AnalysisStore.analysisItem(productId, analysisResult, aggregate, newWatermark);
+            if (!streamed.remaining().isEmpty()) {
+                AnalysisStore.writeContinuation(item, streamed.remaining());
+                item.withString("job_id", jobId);
+            }
+            return item;
+        }
+    }
+
+    private record RangePage(int range, List<Map<String, AttributeValue>> items, boolean last) {
+    }
+
+    private record TaggedReview(ProductRun run, String text) {
+    }
+
+    // Remaining ranges start after the highest sort key read in them, so they are only exact when every review read
+    // had one. Without, a continuation would read some reviews again and count them twice: a partial read is then
+    // not stored at all, and the next refresh recomputes the product from scratch.
+    private record StreamedReviews(int reviewCount, Object lastSortKey, List<KeyRange> remaining, boolean resumable) {
+
+        boolean storable() {
+            return remaining.isEmpty() || resumable;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.reviews.analysis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+// Per-review Comprehend results keyed by a hash of the review text, its language and the model version,
+// so that a review is only ever analyzed once for as long as its text does not change. Results of a
+// sentiment-only analysis are kept under keys of their own, with an empty key phrase list: a result under the
+// regular key always carries the key phrases.
+interface ResultCache {
+
+    String MODEL_VERSION = AnalysisConfig.getString("COMPREHEND_MODEL_VERSION", "1");
+
+    Map<String, ReviewResult> getAll(Collection<String> keys);
+
+    void putAll(Map<String, ReviewResult> results);
+
+    List<CacheCounters> counters();
+
+    // Key phrases make no difference between KEY_PHRASES and FULL results, so they share their keys.
+    static String keyFor(String languageCode, String text, AnalysisDepth depth) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(MODEL_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (!depth.needsKeyPhrases()) {
+                digest.update("sentiment".getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update(languageCode.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
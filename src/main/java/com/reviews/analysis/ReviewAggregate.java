@@ -0,0 +1,232 @@
+package com.reviews.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// The complete rollup of a set of analyzed reviews. Aggregates built by parallel workers, stream micro-batches
+// or earlier invocations combine with merge(), which is associative and exact: confidences are summed in
+// fixed point so the grouping of the partial sums never changes the result. Instances are not thread-safe.
+final class ReviewAggregate {
+
+    private static final int TOP_KEY_PHRASES = 5;
+    private static final double CONFIDENCE_SCALE = 1_000_000_000d;
+    private static final int TOP_ASPECTS = 5;
+    private static final AspectRanking ASPECT_RANKING = AnalysisConfig.getEnum("ASPECT_RANKING", AspectRanking.class, AspectRanking.POSITIVE);
+    private static final int KEY_PHRASE_SKETCH_CAPACITY = AnalysisConfig.getInt("KEY_PHRASE_SKETCH_CAPACITY", 200);
+    // Aspects are ranked on more than volume, so more of them are monitored than key phrases; the bound keeps the
+    // stored aggregate far below DynamoDB's item size limit however many distinct phrases a product has.
+    private static final int ASPECT_SKETCH_CAPACITY = AnalysisConfig.getInt("ASPECT_SKETCH_CAPACITY", 1_000);
+    private static final byte FORMAT_VERSION = 1;
+
+    // What is tallied: key phrases from KEY_PHRASES up, aspect sentiments only at FULL depth.
+    private final AnalysisDepth depth;
+    // Tallies are indexed by Sentiment.ordinal(); the String-keyed maps only exist in buildFinalResult().
+    private final int[] sentimentCounts = new int[Sentiment.COUNT];
+    private final long[] sentimentConfidences = new long[Sentiment.COUNT];
+    private KeyPhraseSketch keyPhrases = new KeyPhraseSketch(KEY_PHRASE_SKETCH_CAPACITY);
+    private KeyPhraseSketch aspects = new KeyPhraseSketch(ASPECT_SKETCH_CAPACITY);
+    private int analyzedReviewsCount;
+    private int shortReviewsCount;
+    private int longReviewsCount;
+
+    ReviewAggregate() {
+        this(AnalysisDepth.FULL);
+    }
+
+    ReviewAggregate(AnalysisDepth depth) {
+        this.depth = depth;
+    }
+
+    void add(ReviewResult result, int reviewLength) {
+        analyzedReviewsCount++;
+        int sentiment = result.sentiment().ordinal();
+        sentimentCounts[sentiment]++;
+        updateSentimentConfidence(sentiment, result.confidence(), 1);
+
+        if (result.keyPhrases() != null && depth.needsKeyPhrases()) {
+            for (String keyPhrase : result.keyPhrases()) {
+                keyPhrases.offer(keyPhrase);
+                if (depth == AnalysisDepth.FULL) {
+                    aspects.offer(keyPhrase, result.sentiment());
+                }
+            }
+        }
+
+        if (reviewLength < 50) {
+            shortReviewsCount++;
+        } else if (reviewLength > 200) {
+            longReviewsCount++;
+        }
+    }
+
+    // Undoes add() for a review whose text was replaced.
+    void retract(ReviewResult result, int reviewLength) {
+        analyzedReviewsCount--;
+        int sentiment = result.sentiment().ordinal();
+        sentimentCounts[sentiment]--;
+        updateSentimentConfidence(sentiment, result.confidence(), -1);
+
+        if (result.keyPhrases() != null && depth.needsKeyPhrases()) {
+            for (String keyPhrase : result.keyPhrases()) {
+                keyPhrases.retract(keyPhrase);
+                aspects.retract(keyPhrase, result.sentiment());
+            }
+        }
+
+        if (reviewLength < 50) {
+            shortReviewsCount--;
+        } else if (reviewLength > 200) {
+            longReviewsCount--;
+        }
+    }
+
+    // Folds other into this aggregate, as if other's reviews had been added after this one's. Both must have been
+    // built at the same depth: a poorer one lacks tallies the merged aggregate would claim to have.
+    ReviewAggregate merge(ReviewAggregate other) {
+        if (other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge a " + other.depth + " aggregate into a " + depth + " one");
+        }
+        analyzedReviewsCount += other.analyzedReviewsCount;
+        shortReviewsCount += other.shortReviewsCount;
+        longReviewsCount += other.longReviewsCount;
+        for (int sentiment = 0; sentiment < Sentiment.COUNT; sentiment++) {
+            sentimentCounts[sentiment] += other.sentimentCounts[sentiment];
+            sentimentConfidences[sentiment] += other.sentimentConfidences[sentiment];
+        }
+        keyPhrases.merge(other.keyPhrases);
+        aspects.merge(other.aspects);
+        return this;
+    }
+
+    AnalysisDepth depth() {
+        return depth;
+    }
+
+    int analyzedReviews() {
+        return analyzedReviewsCount;
+    }
+
+    int sentimentCount(Sentiment sentiment) {
+        return sentimentCounts[sentiment.ordinal()];
+    }
+
+    Map<String, Object> buildFinalResult() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("total_reviews", analyzedReviewsCount);
+        result.put("sentiment_percentages", calculateSentimentPercentages());
+        result.put("average_sentiment_confidence", calculateAverageConfidence());
+        result.put("short_reviews_count", shortReviewsCount);
+        result.put("long_reviews_count", longReviewsCount);
+        result.put("analysis_depth", depth.name());
+        if (depth.needsKeyPhrases()) {
+            result.put("top_key_phrases", getTopKeyPhrases());
+        }
+        if (depth == AnalysisDepth.FULL) {
+            result.put("top_aspect_based_sentiments", getTopAspectSentiments());
+        }
+
+        return result;
+    }
+
+    byte[] serialize() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(depth.ordinal());
+            out.writeInt(analyzedReviewsCount);
+            out.writeInt(shortReviewsCount);
+            out.writeInt(longReviewsCount);
+            for (int sentiment = 0; sentiment < Sentiment.COUNT; sentiment++) {
+                out.writeInt(sentimentCounts[sentiment]);
+                out.writeLong(sentimentConfidences[sentiment]);
+            }
+            keyPhrases.writeTo(out);
+            aspects.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ReviewAggregate deserialize(byte[] serialized) {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(serialized)))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported aggregate format version " + version);
+            }
+            ReviewAggregate aggregate = new ReviewAggregate(AnalysisDepth.VALUES[in.readByte()]);
+            aggregate.analyzedReviewsCount = in.readInt();
+            aggregate.shortReviewsCount = in.readInt();
+            aggregate.longReviewsCount = in.readInt();
+            for (int sentiment = 0; sentiment < Sentiment.COUNT; sentiment++) {
+                aggregate.sentimentCounts[sentiment] = in.readInt();
+                aggregate.sentimentConfidences[sentiment] = in.readLong();
+            }
+            aggregate.keyPhrases = KeyPhraseSketch.readFrom(in);
+            aggregate.aspects = KeyPhraseSketch.readFrom(in);
+            return aggregate;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void updateSentimentConfidence(int sentiment, double confidence, int sign) {
+        if (!Double.isNaN(confidence)) {
+            sentimentConfidences[sentiment] += sign * Math.round(confidence * CONFIDENCE_SCALE);
+        }
+    }
+
+    private Map<String, Double> calculateSentimentPercentages() {
+        Map<String, Double> percentages = new HashMap<>();
+        for (Sentiment sentiment : Sentiment.VALUES) {
+            int count = sentimentCounts[sentiment.ordinal()];
+            percentages.put(sentiment.name(), analyzedReviewsCount > 0 ? (count / (double) analyzedReviewsCount) * 100 : 0.0);
+        }
+        return percentages;
+    }
+
+    private Map<String, Double> calculateAverageConfidence() {
+        Map<String, Double> averages = new HashMap<>();
+        for (Sentiment sentiment : Sentiment.VALUES) {
+            int count = sentimentCounts[sentiment.ordinal()];
+            averages.put(sentiment.name(), count > 0 ? sentimentConfidences[sentiment.ordinal()] / CONFIDENCE_SCALE / count : 0.0);
+        }
+        return averages;
+    }
+
+    private static Map<String, Integer> toSentimentMap(int[] counts) {
+        Map<String, Integer> sentimentMap = new HashMap<>();
+        for (Sentiment sentiment : Sentiment.VALUES) {
+            sentimentMap.put(sentiment.name(), counts[sentiment.ordinal()]);
+        }
+        return sentimentMap;
+    }
+
+    private List<String> getTopKeyPhrases() {
+        return keyPhrases.top(TOP_KEY_PHRASES);
+    }
+
+    // A list ordered best first, as results are stored as DynamoDB maps, which do not keep their order; ties go to
+    // the alphabetically first phrase so the result does not depend on hashing.
+    private List<Map<String, Object>> getTopAspectSentiments() {
+        Comparator<Map.Entry<String, int[]>> order = Comparator
+                .<Map.Entry<String, int[]>>comparingDouble(e -> ASPECT_RANKING.score(e.getValue()))
+                .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        List<Map<String, Object>> topAspects = new ArrayList<>(TOP_ASPECTS);
+        for (Map.Entry<String, int[]> aspect : TopSelection.greatest(aspects.sentimentTallies().entrySet(), TOP_ASPECTS, order)) {
+            topAspects.add(Map.of("phrase", aspect.getKey(), "counts", toSentimentMap(aspect.getValue())));
+        }
+        return topAspects;
+    }
+}
@@ -0,0 +1,178 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.comprehend.AmazonComprehend;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesItemResult;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentItemResult;
+import com.amazonaws.services.comprehend.model.KeyPhrase;
+import com.amazonaws.services.comprehend.model.SentimentScore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// Resolves review texts to Comprehend results, from the result cache where possible and otherwise through
+// batched Comprehend calls fanned out on the AnalysisExecutor. Results are handed to the sink one batch at a
+// time, possibly from several threads at once, aligned with the batch's texts; blank reviews are skipped and
+// reviews Comprehend rejected have a null result.
+final class ReviewAnalyzer {
+
+    static final String LANGUAGE_CODE = "en";
+
+    private final ComprehendBatchClient batchClient;
+    private final ResultCache resultCache;
+
+    ReviewAnalyzer(AmazonComprehend comprehend, ResultCache resultCache) {
+        this.batchClient = new ComprehendBatchClient(comprehend, LANGUAGE_CODE);
+        this.resultCache = resultCache;
+    }
+
+    // Every batch is rolled up into its own partial aggregate, which is then merged into the target. The reviews
+    // are analyzed at the depth of the target.
+    void analyze(List<String> reviews, long deadlineMillis, ReviewAggregate aggregate) {
+        analyze(reviews, aggregate.depth(), deadlineMillis, (texts, results) -> {
+            ReviewAggregate partial = new ReviewAggregate(aggregate.depth());
+            for (int i = 0; i < texts.size(); i++) {
+                if (results.get(i) != null) {
+                    partial.add(results.get(i), texts.get(i).length());
+                }
+            }
+            synchronized (aggregate) {
+                aggregate.merge(partial);
+            }
+        });
+    }
+
+    void analyze(List<String> reviews, AnalysisDepth depth, long deadlineMillis, BiConsumer<List<String>, List<ReviewResult>> sink) {
+        analyze(reviews, Function.identity(), depth, deadlineMillis, sink);
+    }
+
+    // Analyzes items that carry a review text, such as reviews tagged with their product, so that the reviews of
+    // several products can share Comprehend batches; the sink receives the items rather than the bare texts.
+    //
+    // Results of a SENTIMENT analysis have no key phrases. Reviews not cached at the requested depth are looked up
+    // at the other one: a result with key phrases also answers a sentiment-only request, and a review so far only
+    // analyzed for sentiment is upgraded with DetectKeyPhrases alone.
+    <T> void analyze(List<T> items, Function<T, String> textOf, AnalysisDepth depth, long deadlineMillis,
+                     BiConsumer<List<T>, List<ReviewResult>> sink) {
+        List<T> reviews = new ArrayList<>(items.size());
+        List<String> cacheKeys = new ArrayList<>(items.size());
+        for (T item : items) {
+            String review = textOf.apply(item);
+            if (review != null && !review.isBlank()) {
+                reviews.add(item);
+                cacheKeys.add(ResultCache.keyFor(LANGUAGE_CODE, review, depth));
+            }
+        }
+        Map<String, ReviewResult> cachedResults = resultCache.getAll(cacheKeys);
+
+        AnalysisDepth otherDepth = depth.needsKeyPhrases() ? AnalysisDepth.SENTIMENT : AnalysisDepth.FULL;
+        List<String> otherKeys = new ArrayList<>();
+        for (int i = 0; i < reviews.size(); i++) {
+            if (!cachedResults.containsKey(cacheKeys.get(i))) {
+                otherKeys.add(ResultCache.keyFor(LANGUAGE_CODE, textOf.apply(reviews.get(i)), otherDepth));
+            }
+        }
+        Map<String, ReviewResult> otherResults = otherKeys.isEmpty() ? Map.of() : resultCache.getAll(otherKeys);
+
+        List<T> hits = new ArrayList<>(cachedResults.size());
+        List<ReviewResult> hitResults = new ArrayList<>(cachedResults.size());
+        List<Pending<T>> upgrades = new ArrayList<>();
+        List<Pending<T>> misses = new ArrayList<>();
+        int otherIndex = 0;
+        for (int i = 0; i < reviews.size(); i++) {
+            T item = reviews.get(i);
+            ReviewResult cached = cachedResults.get(cacheKeys.get(i));
+            if (cached == null) {
+                ReviewResult other = otherResults.get(otherKeys.get(otherIndex++));
+                if (other == null) {
+                    misses.add(new Pending<>(item, null));
+                } else if (depth.needsKeyPhrases()) {
+                    upgrades.add(new Pending<>(item, other));
+                } else {
+                    cached = other;
+                }
+            }
+            if (cached != null) {
+                hits.add(item);
+                hitResults.add(depth.needsKeyPhrases() ? cached : withoutKeyPhrases(cached));
+            }
+        }
+        if (!hits.isEmpty()) {
+            sink.accept(hits, hitResults);
+        }
+
+        List<List<Pending<T>>> batches = new ArrayList<>(partition(upgrades, ComprehendBatchClient.MAX_BATCH_SIZE));
+        batches.addAll(partition(misses, ComprehendBatchClient.MAX_BATCH_SIZE));
+        AnalysisExecutor.forEach(batches, deadlineMillis, batch -> {
+            List<T> batchItems = new ArrayList<>(batch.size());
+            List<String> texts = new ArrayList<>(batch.size());
+            for (Pending<T> pending : batch) {
+                batchItems.add(pending.item());
+                texts.add(textOf.apply(pending.item()));
+            }
+            boolean upgrade = batch.get(0).sentiment() != null;
+            List<BatchDetectSentimentItemResult> sentimentResults = upgrade ? null : batchClient.detectSentiment(texts);
+            List<BatchDetectKeyPhrasesItemResult> keyPhrasesResults = depth.needsKeyPhrases() ? batchClient.detectKeyPhrases(texts) : null;
+
+            List<ReviewResult> results = new ArrayList<>(batch.size());
+            Map<String, ReviewResult> freshResults = new HashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                ReviewResult result = upgrade ? withoutKeyPhrases(batch.get(i).sentiment()) : toSentimentResult(sentimentResults.get(i));
+                if (result != null && keyPhrasesResults != null) {
+                    result = withKeyPhrases(result, keyPhrasesResults.get(i));
+                }
+                results.add(result);
+                if (result != null && !depth.needsKeyPhrases()) {
+                    freshResults.put(ResultCache.keyFor(LANGUAGE_CODE, texts.get(i), depth),
+                            new ReviewResult(result.sentiment(), result.confidence(), List.of()));
+                } else if (result != null && result.keyPhrases() != null) {
+                    freshResults.put(ResultCache.keyFor(LANGUAGE_CODE, texts.get(i), depth), result);
+                }
+            }
+            sink.accept(batchItems, results);
+            resultCache.putAll(freshResults);
+        });
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> partitions = new ArrayList<>((items.size() + size - 1) / size);
+        for (int start = 0; start < items.size(); start += size) {
+            partitions.add(items.subList(start, Math.min(start + size, items.size())));
+        }
+        return partitions;
+    }
+
+    private static ReviewResult toSentimentResult(BatchDetectSentimentItemResult sentimentResult) {
+        if (sentimentResult == null) {
+            return null;
+        }
+        return new ReviewResult(Sentiment.valueOf(sentimentResult.getSentiment().toUpperCase(Locale.ROOT)), getMaxSentimentConfidence(sentimentResult.getSentimentScore()), null);
+    }
+
+    private static ReviewResult withKeyPhrases(ReviewResult sentimentResult, BatchDetectKeyPhrasesItemResult keyPhrasesResult) {
+        if (keyPhrasesResult == null) {
+            return sentimentResult;
+        }
+        List<String> keyPhrases = new ArrayList<>(keyPhrasesResult.getKeyPhrases().size());
+        for (KeyPhrase phrase : keyPhrasesResult.getKeyPhrases()) {
+            keyPhrases.add(phrase.getText().toLowerCase(Locale.ROOT));
+        }
+        return new ReviewResult(sentimentResult.sentiment(), sentimentResult.confidence(), keyPhrases);
+    }
+
+    private static ReviewResult withoutKeyPhrases(ReviewResult result) {
+        return result.keyPhrases() == null ? result : new ReviewResult(result.sentiment(), result.confidence(), null);
+    }
+
+    private static double getMaxSentimentConfidence(SentimentScore sentimentScore) {
+        return Math.max(Math.max(sentimentScore.getPositive(), sentimentScore.getNegative()),
+                Math.max(sentimentScore.getNeutral(), sentimentScore.getMixed()));
+    }
+
+    private record Pending<T>(T item, ReviewResult sentiment) {
+    }
+}
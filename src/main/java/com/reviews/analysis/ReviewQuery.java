@@ -0,0 +1,268 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// Pages of the reviews of one product, read with the low-level client and projected down to the review text and
+// the sort key: nothing else is transferred or unmarshalled. The projection saves bandwidth and allocation, not
+// read capacity, which DynamoDB charges on the full item size.
+final class ReviewQuery {
+
+    static final String REVIEWS_TABLE = "ProductReviews";
+    static final String REVIEW_PROJECTION = "#text, #sort_key";
+    static final Map<String, String> REVIEW_PROJECTION_NAMES = Map.of("#text", "review_text", "#sort_key", SentimentAnalysisLambda.SORT_KEY);
+    private static final int PAGE_LIMIT = AnalysisConfig.getInt("QUERY_PAGE_LIMIT", 0);
+    // Characters after the common prefix of the range bounds that take part in string key interpolation.
+    private static final int INTERPOLATED_CHARS = 8;
+
+    private ReviewQuery() {
+    }
+
+    // Reviews with a sort key above after and up to upTo; a null bound leaves that side of the range open.
+    record KeyRange(Object after, Object upTo) {
+
+        boolean contains(Object sortKey) {
+            return (after == null || compareSortKeys(sortKey, after) > 0) && (upTo == null || compareSortKeys(sortKey, upTo) <= 0);
+        }
+    }
+
+    // Splits the reviews past the watermark into up to the given number of disjoint, adjacent key ranges that can be
+    // read in parallel; the last one stays open so it also covers reviews added later. The ranges are interpolated
+    // between the lowest and the highest sort key, numerically or on the characters following their common
+    // prefix, so they are balanced when the keys are evenly spread.
+    static List<KeyRange> partition(AmazonDynamoDB dynamoDB, String productId, Object watermark, int partitions) {
+        KeyRange unsplit = new KeyRange(watermark, null);
+        if (partitions <= 1) {
+            return List.of(unsplit);
+        }
+        Object low = boundary(dynamoDB, productId, unsplit, true);
+        Object high = low != null ? boundary(dynamoDB, productId, unsplit, false) : null;
+        if (low == null || high == null || compareSortKeys(low, high) >= 0) {
+            return List.of(unsplit);
+        }
+
+        List<KeyRange> ranges = new ArrayList<>(partitions);
+        Object after = watermark;
+        for (Object split : splitPoints(low, high, partitions)) {
+            boolean ascending = after == null || compareSortKeys(split, after) > 0;
+            if (ascending && compareSortKeys(split, low) >= 0 && compareSortKeys(split, high) < 0) {
+                ranges.add(new KeyRange(after, split));
+                after = split;
+            }
+        }
+        ranges.add(new KeyRange(after, null));
+        return ranges;
+    }
+
+    // Issues one Query call per page, in next(), following LastEvaluatedKey; hasNext() makes no call. A range closed
+    // on both sides is read with BETWEEN, the only two-sided key condition, which includes its lower bound: that
+    // review is dropped from the pages.
+    static Iterator<QueryResult> pages(AmazonDynamoDB dynamoDB, String productId, KeyRange range) {
+        QueryRequest request = request(productId, range);
+        boolean dropLowerBound = range.after() != null && range.upTo() != null;
+        return new Iterator<>() {
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                return !exhausted;
+            }
+
+            @Override
+            public QueryResult next() {
+                if (exhausted) {
+                    throw new NoSuchElementException();
+                }
+                QueryResult page;
+                InvocationMetrics.requestStarted();
+                try {
+                    page = dynamoDB.query(request);
+                } finally {
+                    InvocationMetrics.requestFinished();
+                }
+                Map<String, AttributeValue> lastKey = page.getLastEvaluatedKey();
+                exhausted = lastKey == null || lastKey.isEmpty();
+                request.setExclusiveStartKey(lastKey);
+                return dropLowerBound ? excludingSortKey(page, range.after()) : page;
+            }
+        };
+    }
+
+    static String reviewText(Map<String, AttributeValue> item) {
+        AttributeValue text = item.get("review_text");
+        return text != null ? text.getS() : null;
+    }
+
+    // Numbers come back as BigDecimal and strings as String, the same types the Document API stored watermarks as.
+    static Object sortKey(Map<String, AttributeValue> item) {
+        AttributeValue value = item.get(SentimentAnalysisLambda.SORT_KEY);
+        return value != null ? sortKey(value.getN(), value.getS()) : null;
+    }
+
+    // The sort key of an attribute value given as its number and string forms, whichever SDK it came from.
+    static Object sortKey(String number, String string) {
+        return number != null ? new BigDecimal(number) : string;
+    }
+
+    // Numbers compare by value whatever their Java type, so keys from queries, stream records and stored
+    // watermarks order the same way.
+    static int compareSortKeys(Object left, Object right) {
+        if (left instanceof Number leftNumber && right instanceof Number rightNumber) {
+            return toBigDecimal(leftNumber).compareTo(toBigDecimal(rightNumber));
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    private static BigDecimal toBigDecimal(Number number) {
+        return number instanceof BigDecimal decimal ? decimal : new BigDecimal(number.toString());
+    }
+
+    static AttributeValue toAttributeValue(Object sortKey) {
+        return sortKey instanceof Number number
+                ? new AttributeValue().withN(number.toString())
+                : new AttributeValue().withS(sortKey.toString());
+    }
+
+    private static QueryRequest request(String productId, KeyRange range) {
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":v_id", new AttributeValue().withS(productId));
+        String keyCondition = "product_id = :v_id";
+        if (range.after() != null && range.upTo() != null) {
+            keyCondition += " AND #sort_key BETWEEN :v_after AND :v_up_to";
+        } else if (range.after() != null) {
+            keyCondition += " AND #sort_key > :v_after";
+        } else if (range.upTo() != null) {
+            keyCondition += " AND #sort_key <= :v_up_to";
+        }
+        if (range.after() != null) {
+            values.put(":v_after", toAttributeValue(range.after()));
+        }
+        if (range.upTo() != null) {
+            values.put(":v_up_to", toAttributeValue(range.upTo()));
+        }
+
+        QueryRequest request = new QueryRequest()
+                .withTableName(REVIEWS_TABLE)
+                .withKeyConditionExpression(keyCondition)
+                .withProjectionExpression(REVIEW_PROJECTION)
+                .withExpressionAttributeNames(REVIEW_PROJECTION_NAMES)
+                .withExpressionAttributeValues(values);
+        if (PAGE_LIMIT > 0) {
+            request.setLimit(PAGE_LIMIT);
+        }
+        return request;
+    }
+
+    // The lowest or highest sort key in the range, or null when there are no such reviews.
+    private static Object boundary(AmazonDynamoDB dynamoDB, String productId, KeyRange range, boolean lowest) {
+        QueryRequest request = request(productId, range)
+                .withProjectionExpression("#sort_key")
+                .withExpressionAttributeNames(Map.of("#sort_key", SentimentAnalysisLambda.SORT_KEY))
+                .withScanIndexForward(lowest)
+                .withLimit(1);
+        InvocationMetrics.requestStarted();
+        try {
+            List<Map<String, AttributeValue>> items = dynamoDB.query(request).getItems();
+            return items.isEmpty() ? null : sortKey(items.get(0));
+        } finally {
+            InvocationMetrics.requestFinished();
+        }
+    }
+
+    private static List<Object> splitPoints(Object low, Object high, int partitions) {
+        List<Object> points = new ArrayList<>(partitions - 1);
+        if (low instanceof BigDecimal lowNumber && high instanceof BigDecimal highNumber) {
+            BigDecimal width = highNumber.subtract(lowNumber);
+            for (int i = 1; i < partitions; i++) {
+                BigDecimal offset = width.multiply(BigDecimal.valueOf(i)).divide(BigDecimal.valueOf(partitions), 0, RoundingMode.FLOOR);
+                points.add(lowNumber.add(offset));
+            }
+            return points;
+        }
+
+        String lowKey = low.toString();
+        String highKey = high.toString();
+        int prefix = 0;
+        while (prefix < lowKey.length() && prefix < highKey.length() && lowKey.charAt(prefix) == highKey.charAt(prefix)) {
+            prefix++;
+        }
+        // Digits span only the characters the two keys actually use, so ASCII keys are not spread over all of UTF-16.
+        char minChar = Character.MAX_VALUE;
+        char maxChar = Character.MIN_VALUE;
+        for (String key : List.of(lowKey, highKey)) {
+            for (int i = prefix; i < key.length(); i++) {
+                minChar = (char) Math.min(minChar, key.charAt(i));
+                maxChar = (char) Math.max(maxChar, key.charAt(i));
+            }
+        }
+        if (minChar > maxChar) {
+            return points;
+        }
+        Alphabet alphabet = new Alphabet(minChar, maxChar - minChar + 2);
+        BigInteger lowValue = alphabet.valueOf(lowKey, prefix);
+        BigInteger width = alphabet.valueOf(highKey, prefix).subtract(lowValue);
+        for (int i = 1; i < partitions; i++) {
+            BigInteger value = lowValue.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions)));
+            String chars = alphabet.charsOf(value);
+            if (chars.chars().noneMatch(c -> Character.isSurrogate((char) c))) {  // Lone surrogates have no UTF-8 encoding
+                points.add(lowKey.substring(0, prefix) + chars);
+            }
+        }
+        return points;
+    }
+
+    private static QueryResult excludingSortKey(QueryResult page, Object excluded) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>(page.getItems().size());
+        for (Map<String, AttributeValue> item : page.getItems()) {
+            Object sortKey = sortKey(item);
+            if (sortKey == null || compareSortKeys(sortKey, excluded) != 0) {
+                items.add(item);
+            }
+        }
+        return page.withItems(items);
+    }
+
+    // Key suffixes as numbers in base radix: digit 0 stands for the end of the key, so shorter keys sort lower,
+    // and digit d for the character first + d - 1.
+    private record Alphabet(char first, int radix) {
+
+        BigInteger valueOf(String key, int prefix) {
+            BigInteger value = BigInteger.ZERO;
+            for (int i = 0; i < INTERPOLATED_CHARS; i++) {
+                int digit = prefix + i < key.length() ? key.charAt(prefix + i) - first + 1 : 0;
+                value = value.multiply(BigInteger.valueOf(radix)).add(BigInteger.valueOf(digit));
+            }
+            return value;
+        }
+
+        String charsOf(BigInteger value) {
+            int[] digits = new int[INTERPOLATED_CHARS];
+            BigInteger base = BigInteger.valueOf(radix);
+            for (int i = INTERPOLATED_CHARS - 1; i >= 0; i--) {
+                BigInteger[] quotientAndRemainder = value.divideAndRemainder(base);
+                digits[i] = quotientAndRemainder[1].intValue();
+                value = quotientAndRemainder[0];
+            }
+            StringBuilder chars = new StringBuilder(INTERPOLATED_CHARS);
+            for (int digit : digits) {
+                if (digit == 0) {
+                    break;
+                }
+                chars.append((char) (first + digit - 1));
+            }
+            return chars.toString();
+        }
+    }
+}
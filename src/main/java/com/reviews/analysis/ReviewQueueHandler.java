@@ -0,0 +1,182 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Consumes analysis requests from SQS. Every message names one product, in its body or in a "product_id" message
+// attribute, and may ask for a refresh with a "force_refresh" attribute and for an "analysis_depth". Messages for
+// the same product are served by a single analysis at the richest depth any of them asks for, distinct products
+// are analyzed concurrently, and only the messages of failed products are reported back, so the queue redelivers
+// just those.
+public class ReviewQueueHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
+
+    private static final long DEADLINE_MARGIN_MILLIS = AnalysisConfig.getLong("DEADLINE_MARGIN_MILLIS", 1_000);
+    private static final int PRODUCT_CONCURRENCY = AnalysisConfig.getInt("QUEUE_PRODUCT_CONCURRENCY", 4);
+
+    // Analyzes one product; the default one refreshes its stored analysis unless that is still fresh.
+    @FunctionalInterface
+    interface ProductProcessor {
+        void process(String productId, boolean forceRefresh, AnalysisDepth depth, long deadlineMillis);
+    }
+
+    private final ProductProcessor processor;
+
+    public ReviewQueueHandler() {
+        this(ReviewQueueHandler::refreshProduct);
+    }
+
+    ReviewQueueHandler(ProductProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public SQSBatchResponse handleRequest(SQSEvent event, Context context) {
+        long deadlineMillis = context != null
+                ? System.currentTimeMillis() + context.getRemainingTimeInMillis() - DEADLINE_MARGIN_MILLIS
+                : Long.MAX_VALUE;
+        InvocationMetrics metrics = InvocationMetrics.begin();
+
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        Map<String, ProductRequest> requests = new LinkedHashMap<>();
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            String productId = productId(message);
+            if (productId == null) {
+                // Retrying cannot fix the message; reporting it lets the redrive policy move it to the dead-letter queue.
+                log(context, "Message " + message.getMessageId() + " names no product");
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                continue;
+            }
+            AnalysisDepth depth;
+            try {
+                depth = AnalysisDepth.parse(attribute(message, "analysis_depth"));
+            } catch (IllegalArgumentException e) {
+                log(context, "Message " + message.getMessageId() + " asks for an unknown analysis depth");
+                failures.add(new SQSBatchResponse.BatchItemFailure(message.getMessageId()));
+                continue;
+            }
+            ProductRequest request = requests.computeIfAbsent(productId, ProductRequest::new);
+            request.messageIds.add(message.getMessageId());
+            // A redelivered refresh resumes the partial analysis its earlier delivery stored instead of restarting it.
+            request.forceRefresh |= Boolean.parseBoolean(attribute(message, "force_refresh")) && !isRedelivered(message);
+            if (request.depth == null || depth.includes(request.depth)) {
+                request.depth = depth;
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCT_CONCURRENCY, Thread.ofVirtual().name("queue-product-", 0).factory());
+        try {
+            Map<ProductRequest, Future<?>> futures = new LinkedHashMap<>();
+            for (ProductRequest request : requests.values()) {
+                futures.put(request, executor.submit(() -> processor.process(request.productId, request.forceRefresh, request.depth, deadlineMillis)));
+            }
+            futures.forEach((request, future) -> {
+                Throwable failure = await(future, deadlineMillis);
+                if (failure != null) {
+                    AwsClients.reportFailure(failure);
+                    log(context, "Failed to analyze " + request.productId + ": " + failure);
+                    request.messageIds.forEach(messageId -> failures.add(new SQSBatchResponse.BatchItemFailure(messageId)));
+                }
+            });
+        } finally {
+            shutDown(executor, deadlineMillis);
+            AwsClients.resetIfUnhealthy();
+            log(context, metrics.summary("queue"));
+        }
+        return new SQSBatchResponse(failures);
+    }
+
+    // Unlike close(), which waits for cancelled analyses however long they take to notice, this waits no longer than
+    // the deadline: an analysis stuck in an uninterruptible call is left behind rather than timing out the invocation.
+    private static void shutDown(ExecutorService executor, long deadlineMillis) {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Throwable await(Future<?> future, long deadlineMillis) {
+        try {
+            future.get(Math.max(0, deadlineMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return new IllegalStateException("Review analysis did not finish before the deadline", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return e;
+        }
+    }
+
+    private static void refreshProduct(String productId, boolean forceRefresh, AnalysisDepth depth, long deadlineMillis) {
+        AnalysisStore analysisStore = new AnalysisStore(AwsClients.dynamoDB());
+        if (!forceRefresh && ProductAnalyzer.isFresh(analysisStore.loadResult(productId), depth)) {
+            return;
+        }
+        Item storedAnalysis = analysisStore.load(productId);
+        ReviewAnalyzer reviewAnalyzer = new ReviewAnalyzer(AwsClients.comprehend(),
+                TieredResultCache.overRemote(new DynamoResultCache(AwsClients.dynamoDBClient(), deadlineMillis)));
+        Map<String, Object> result = new ProductAnalyzer(AwsClients.dynamoDBClient(), analysisStore, reviewAnalyzer, deadlineMillis)
+                .analyze(productId, storedAnalysis, forceRefresh, depth);
+        // A partial result was stored with its continuation; failing the messages redelivers them to resume it.
+        if (Boolean.TRUE.equals(result.get("partial"))) {
+            throw new IllegalStateException("Analysis of " + productId + " ran out of time and continues on redelivery");
+        }
+    }
+
+    private static String productId(SQSEvent.SQSMessage message) {
+        String productId = attribute(message, "product_id");
+        if (productId == null && message.getBody() != null) {
+            productId = message.getBody().trim();
+        }
+        return productId == null || productId.isEmpty() ? null : productId;
+    }
+
+    private static boolean isRedelivered(SQSEvent.SQSMessage message) {
+        String receiveCount = message.getAttributes() != null ? message.getAttributes().get("ApproximateReceiveCount") : null;
+        return receiveCount != null && !"1".equals(receiveCount);
+    }
+
+    private static String attribute(SQSEvent.SQSMessage message, String name) {
+        if (message.getMessageAttributes() == null) {
+            return null;
+        }
+        SQSEvent.MessageAttribute attribute = message.getMessageAttributes().get(name);
+        return attribute != null ? attribute.getStringValue() : null;
+    }
+
+    private static void log(Context context, String message) {
+        if (context != null) {
+            context.getLogger().log(message);
+        }
+    }
+
+    private static final class ProductRequest {
+        private final String productId;
+        private final List<String> messageIds = new ArrayList<>();
+        private boolean forceRefresh;
+        private AnalysisDepth depth;
+
+        private ProductRequest(String productId) {
+            this.productId = productId;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.reviews.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Uniform random sample of at most capacity review texts from a stream of unknown length (Algorithm R): every
+// review offered so far is in the sample with the same probability. Blank reviews are not part of the population,
+// as Comprehend is never asked about them.
+final class ReviewReservoir {
+
+    private final int capacity;
+    private final List<String> sample;
+    private final SplittableRandom random = new SplittableRandom();
+    private long population;
+
+    ReviewReservoir(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Reservoir capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.sample = new ArrayList<>(Math.min(capacity, 1_024));
+    }
+
+    void offer(String review) {
+        if (review == null || review.isBlank()) {
+            return;
+        }
+        population++;
+        if (sample.size() < capacity) {
+            sample.add(review);
+        } else {
+            long slot = random.nextLong(population);
+            if (slot < capacity) {
+                sample.set((int) slot, review);
+            }
+        }
+    }
+
+    long population() {
+        return population;
+    }
+
+    // In random order, so every prefix is a uniform sample in its own right.
+    List<String> shuffled() {
+        List<String> shuffled = new ArrayList<>(sample);
+        Collections.shuffle(shuffled, random);
+        return shuffled;
+    }
+}
@@ -0,0 +1,8 @@
+package com.reviews.analysis;
+
+import java.util.List;
+
+// The Comprehend outcome for a single review: its overall sentiment, the confidence of that sentiment and the
+// lower-cased key phrases found in the text (null when key-phrase extraction failed).
+record ReviewResult(Sentiment sentiment, double confidence, List<String> keyPhrases) {
+}
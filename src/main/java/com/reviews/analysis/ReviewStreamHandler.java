@@ -0,0 +1,193 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.dynamodbv2.document.Item;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.StreamsEventResponse;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Consumes the ProductReviews stream and folds new and edited reviews into the stored aggregate of their product,
+// so aggregates follow the ingest rate without re-querying the reviews table. Products without a stored aggregate
+// or a watermark, and every product when sort keys are not time-ordered, are left to the next full analysis: a
+// record can then not be told apart from a review a query already counted.
+//
+// Redelivered records are skipped: each product remembers the last stream sequence number applied to it, and
+// inserts at or below its watermark were already counted by a query.
+public class ReviewStreamHandler implements RequestHandler<DynamodbEvent, StreamsEventResponse> {
+
+    private static final long DEADLINE_MARGIN_MILLIS = AnalysisConfig.getLong("DEADLINE_MARGIN_MILLIS", 1_000);
+    private static final int MAX_UPDATE_ATTEMPTS = AnalysisConfig.getInt("AGGREGATE_UPDATE_MAX_ATTEMPTS", 5);
+
+    @Override
+    public StreamsEventResponse handleRequest(DynamodbEvent event, Context context) {
+        long deadlineMillis = context != null
+                ? System.currentTimeMillis() + context.getRemainingTimeInMillis() - DEADLINE_MARGIN_MILLIS
+                : Long.MAX_VALUE;
+
+        Map<String, List<DynamodbEvent.DynamodbStreamRecord>> recordsByProduct = new LinkedHashMap<>();
+        for (DynamodbEvent.DynamodbStreamRecord record : event.getRecords()) {
+            StreamRecord streamRecord = record.getDynamodb();
+            if (!isReviewChange(record) || streamRecord.getNewImage() == null) {
+                continue;
+            }
+            AttributeValue productId = streamRecord.getNewImage().get("product_id");
+            if (productId != null && productId.getS() != null) {
+                recordsByProduct.computeIfAbsent(productId.getS(), k -> new ArrayList<>()).add(record);
+            }
+        }
+
+        AnalysisStore analysisStore = new AnalysisStore(AwsClients.dynamoDB());
+        ReviewAnalyzer reviewAnalyzer = new ReviewAnalyzer(AwsClients.comprehend(),
+                TieredResultCache.overRemote(new DynamoResultCache(AwsClients.dynamoDBClient(), deadlineMillis)));
+
+        List<StreamsEventResponse.BatchItemFailure> failures = new ArrayList<>();
+        recordsByProduct.forEach((productId, records) -> {
+            try {
+                updateAggregate(productId, records, analysisStore, reviewAnalyzer, deadlineMillis);
+            } catch (RuntimeException e) {
+                AwsClients.reportFailure(e);
+                if (context != null) {
+                    context.getLogger().log("Failed to update aggregate of " + productId + ": " + e);
+                }
+                failures.add(new StreamsEventResponse.BatchItemFailure(records.get(0).getDynamodb().getSequenceNumber()));
+            }
+        });
+        AwsClients.resetIfUnhealthy();
+        return new StreamsEventResponse(failures);
+    }
+
+    private static boolean isReviewChange(DynamodbEvent.DynamodbStreamRecord record) {
+        return "INSERT".equals(record.getEventName()) || "MODIFY".equals(record.getEventName());
+    }
+
+    private void updateAggregate(String productId, List<DynamodbEvent.DynamodbStreamRecord> records, AnalysisStore analysisStore,
+                                 ReviewAnalyzer reviewAnalyzer, long deadlineMillis) {
+        Item stored = analysisStore.load(productId);
+        ReviewAggregate storedAggregate = AnalysisStore.readAggregate(stored);
+        if (storedAggregate == null || !ProductAnalyzer.canExtend(stored)) {
+            return;
+        }
+        List<String> texts = new ArrayList<>();
+        for (DynamodbEvent.DynamodbStreamRecord record : records) {
+            texts.add(reviewText(record.getDynamodb().getNewImage()));
+            if (record.getDynamodb().getOldImage() != null) {
+                texts.add(reviewText(record.getDynamodb().getOldImage()));
+            }
+        }
+        Map<String, ReviewResult> results = new ConcurrentHashMap<>();
+        reviewAnalyzer.analyze(texts, storedAggregate.depth(), deadlineMillis, (batch, batchResults) -> {
+            for (int i = 0; i < batch.size(); i++) {
+                if (batchResults.get(i) != null) {
+                    results.put(batch.get(i), batchResults.get(i));
+                }
+            }
+        });
+
+        for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+            ReviewAggregate aggregate = attempt == 1 ? storedAggregate : AnalysisStore.readAggregate(stored);
+            if (aggregate == null || !ProductAnalyzer.canExtend(stored)) {
+                return;
+            }
+            if (!storedAggregate.depth().includes(aggregate.depth())) {
+                // The results lack what the richer aggregate tallies; the redelivered batch analyzes them again.
+                throw new IllegalStateException("Aggregate of " + productId + " was rebuilt at depth " + aggregate.depth());
+            }
+            Object watermark = stored.get("watermark");
+            List<ReviewQuery.KeyRange> continuation = AnalysisStore.readContinuation(stored);
+            BigInteger appliedSequence = stored.hasAttribute("stream_sequence")
+                    ? new BigInteger(stored.getString("stream_sequence"))
+                    : BigInteger.ZERO;
+            BigInteger lastSequence = appliedSequence;
+
+            for (DynamodbEvent.DynamodbStreamRecord record : records) {
+                BigInteger sequence = new BigInteger(record.getDynamodb().getSequenceNumber());
+                if (sequence.compareTo(appliedSequence) <= 0) {
+                    continue;
+                }
+                lastSequence = lastSequence.max(sequence);
+                if (!isPendingInContinuation(record, continuation)) {
+                    watermark = applyRecord(record, watermark, aggregate, results);
+                }
+            }
+            if (lastSequence.equals(appliedSequence)) {
+                return;
+            }
+
+            Item item = AnalysisStore.analysisItem(productId, aggregate.buildFinalResult(), aggregate, watermark)
+                    .withString("stream_sequence", lastSequence.toString());
+            if (continuation != null) {
+                AnalysisStore.writeContinuation(item, continuation);
+                if (stored.hasAttribute("job_id")) {
+                    item.withString("job_id", stored.getString("job_id"));
+                }
+            }
+            if (analysisStore.save(item, stored)) {
+                return;
+            }
+            stored = analysisStore.load(productId);
+        }
+        throw new IllegalStateException("Aggregate of " + productId + " kept changing while applying stream records");
+    }
+
+    // Reviews in a range that an interrupted analysis has yet to read are counted when it resumes, with their
+    // latest text, so the stream leaves them alone.
+    static boolean isPendingInContinuation(DynamodbEvent.DynamodbStreamRecord record, List<ReviewQuery.KeyRange> continuation) {
+        if (continuation == null) {
+            return false;
+        }
+        Object sortKey = sortKeyValue(record.getDynamodb().getNewImage().get(SentimentAnalysisLambda.SORT_KEY));
+        return sortKey != null && continuation.stream().anyMatch(range -> range.contains(sortKey));
+    }
+
+    // Returns the watermark after the record: reviews above it are new to the aggregate and move it forward.
+    static Object applyRecord(DynamodbEvent.DynamodbStreamRecord record, Object watermark, ReviewAggregate aggregate,
+                              Map<String, ReviewResult> results) {
+        Map<String, AttributeValue> newImage = record.getDynamodb().getNewImage();
+        Map<String, AttributeValue> oldImage = record.getDynamodb().getOldImage();
+        String newText = reviewText(newImage);
+        Object sortKey = sortKeyValue(newImage.get(SentimentAnalysisLambda.SORT_KEY));
+        boolean counted = watermark != null && sortKey != null && ReviewQuery.compareSortKeys(sortKey, watermark) <= 0;
+
+        if (!counted) {
+            ReviewResult newResult = newText != null ? results.get(newText) : null;
+            if (newResult != null) {
+                aggregate.add(newResult, newText.length());
+            }
+            return sortKey != null && (watermark == null || ReviewQuery.compareSortKeys(sortKey, watermark) > 0) ? sortKey : watermark;
+        }
+
+        if ("MODIFY".equals(record.getEventName()) && oldImage != null) {
+            String oldText = reviewText(oldImage);
+            if (newText != null && newText.equals(oldText)) {
+                return watermark;
+            }
+            ReviewResult oldResult = oldText != null ? results.get(oldText) : null;
+            ReviewResult newResult = newText != null ? results.get(newText) : null;
+            if (oldResult != null) {
+                aggregate.retract(oldResult, oldText.length());
+            }
+            if (newResult != null) {
+                aggregate.add(newResult, newText.length());
+            }
+        }
+        return watermark;
+    }
+
+    private static String reviewText(Map<String, AttributeValue> image) {
+        AttributeValue text = image.get("review_text");
+        return text != null ? text.getS() : null;
+    }
+
+    private static Object sortKeyValue(AttributeValue value) {
+        return value != null ? ReviewQuery.sortKey(value.getN(), value.getS()) : null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.reviews.analysis;
+
+// Comprehend's overall sentiment labels; tallies are kept in arrays indexed by ordinal().
+enum Sentiment {
+    POSITIVE,
+    NEGATIVE,
+    NEUTRAL,
+    MIXED;
+
+    static final Sentiment[] VALUES = values();
+    static final int COUNT = VALUES.length;
+}
@@ -1,192 +1,147 @@
 package com.reviews.analysis;
 
-import com.amazonaws.services.comprehend.AmazonComprehend;
-import com.amazonaws.services.comprehend.AmazonComprehendClientBuilder;
-import com.amazonaws.services.comprehend.model.*;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
-import com.amazonaws.services.dynamodbv2.document.*;
-import com.amazonaws.services.dynamodbv2.document.spec.PutItemSpec;
-import com.amazonaws.services.dynamodbv2.document.spec.QuerySpec;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
+// Analyzes one product ({"product_id": ...}) or, for bulk jobs, a comma-separated list of them
+// ({"product_ids": ...}), which returns one result per product. A single product can instead be estimated from a
+// random sample of its reviews with {"analysis_mode": "sample"}, optionally with the "target_margin" in percentage
+// points that the confidence intervals of its sentiment percentages should reach. "analysis_depth" selects
+// SENTIMENT, KEY_PHRASES or FULL analysis (the default, or ANALYSIS_DEPTH) for any of these; the async engine
+// always analyzes at full depth.
 public class SentimentAnalysisLambda implements RequestHandler<Map<String, String>, Map<String, Object>> {
 
-    private static final String REVIEWS_TABLE = "ProductReviews";
-    private static final String ANALYSIS_TABLE = "ProductReviewAnalysis";
+    static final String SORT_KEY = AnalysisConfig.getString("REVIEWS_SORT_KEY", "review_id");
+    // Whether new reviews always get a higher sort key than existing ones, as with timestamps or sequence numbers
+    // but not with random UUIDs. Watermarks are only trusted when a sort key is configured and declared so: the
+    // default review_id is usually a UUID, and a new review sorting below the watermark would never be counted.
+    static final boolean SORT_KEY_TIME_ORDERED = AnalysisConfig.getString("REVIEWS_SORT_KEY", null) != null
+            && AnalysisConfig.getBoolean("REVIEWS_SORT_KEY_TIME_ORDERED", false);
+    private static final long DEADLINE_MARGIN_MILLIS = AnalysisConfig.getLong("DEADLINE_MARGIN_MILLIS", 1_000);
+    private static final double SAMPLE_TARGET_MARGIN = AnalysisConfig.getDouble("SAMPLE_TARGET_MARGIN", 1.0);
+    private static final ProductAnalysisEngine ENGINE = loadEngine(AnalysisConfig.getString("ANALYSIS_ENGINE", "sync"));
 
-    private DynamoDB dynamoDB;
-    private AmazonComprehend comprehendClient;
+    private AnalysisStore analysisStore;
+    private ResultCache resultCache;
+    private long deadlineMillis;
 
     @Override
     public Map<String, Object> handleRequest(Map<String, String> input, Context context) {
-        initializeDynamoDB();
-        initializeComprehend();
-
         String productId = input.get("product_id");
-        if (isInvalidProductId(productId)) {
+        List<String> productIds = parseProductIds(input.get("product_ids"));
+        if (isInvalidProductId(productId) && productIds.isEmpty()) {
             return Map.of("result", "Error: product_id is missing.");
         }
-
-        List<String> reviews = fetchProductReviews(productId);
-        if (reviews.isEmpty()) {
-            return Map.of("result", "Product not found!");
+        AnalysisDepth depth;
+        try {
+            depth = AnalysisDepth.parse(input.get("analysis_depth"));
+        } catch (IllegalArgumentException e) {
+            return Map.of("result", "Error: analysis_depth must be one of " + Arrays.toString(AnalysisDepth.VALUES) + ".");
+        }
+        double targetMargin;
+        try {
+            targetMargin = input.get("target_margin") != null ? Double.parseDouble(input.get("target_margin")) : SAMPLE_TARGET_MARGIN;
+        } catch (NumberFormatException e) {
+            return Map.of("result", "Error: target_margin is not a number.");
         }
 
-        Map<String, Object> analysisResult = analyzeReviews(reviews);
-
-        storePrecomputedResult(productId, analysisResult);
-
-        return analysisResult;
-    }
-
-    private void initializeDynamoDB() {
-        AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard().build();
-        dynamoDB = new DynamoDB(client);
-    }
-
-    private void initializeComprehend() {
-        comprehendClient = AmazonComprehendClientBuilder.standard().build();
-    }
-
-    private boolean isInvalidProductId(String productId) {
-        return productId == null || productId.isEmpty();
-    }
-
-    private List<String> fetchProductReviews(String productId) {
-        Table table = dynamoDB.getTable(REVIEWS_TABLE);
-        QuerySpec querySpec = new QuerySpec().withKeyConditionExpression("product_id = :v_id")
-                .withValueMap(Map.of(":v_id", productId));
-
-        ItemCollection<QueryOutcome> items = table.query(querySpec);
-        List<String> reviews = new ArrayList<>();
-        items.forEach(item -> reviews.add(item.getString("review_text")));
-        return reviews;
-    }
-
-    private Map<String, Object> analyzeReviews(List<String> reviews) {
-        Map<String, Integer> sentimentCounts = initializeSentimentCounts();
-        Map<String, Double> sentimentConfidences = initializeSentimentConfidences();
-        Map<String, Map<String, Integer>> aspectSentiments = new HashMap<>();
-
-        int shortReviewsCount = 0;
-        int longReviewsCount = 0;
-        List<String> keyPhrases = new ArrayList<>();
+        deadlineMillis = context != null
+                ? System.currentTimeMillis() + context.getRemainingTimeInMillis() - DEADLINE_MARGIN_MILLIS
+                : Long.MAX_VALUE;
+        InvocationMetrics metrics = InvocationMetrics.begin();
+        try {
+            analysisStore = new AnalysisStore(AwsClients.dynamoDB());
+            boolean forceRefresh = Boolean.parseBoolean(input.get("force_refresh"));
+            if (!productIds.isEmpty()) {
+                return new LinkedHashMap<>(analyzeProducts(productIds, forceRefresh, depth));
+            }
 
-        for (String review : reviews) {
-            DetectSentimentResult sentimentResult = detectSentiment(review);
-            String sentiment = sentimentResult.getSentiment().toUpperCase();
-            incrementSentimentCount(sentimentCounts, sentiment);
-            updateSentimentConfidence(sentimentConfidences, sentiment, sentimentResult.getSentimentScore());
+            if (!forceRefresh) {
+                Item storedResult = analysisStore.loadResult(productId);
+                if (ProductAnalyzer.isFresh(storedResult, depth)) {
+                    return storedResult.getMap("review_analysis");
+                }
+            }
 
-            analyzeKeyPhrases(review, sentiment, aspectSentiments, keyPhrases);
+            if ("sample".equalsIgnoreCase(input.get("analysis_mode"))) {
+                return productAnalyzer().sample(productId, targetMargin, depth);
+            }
 
-            if (review.length() < 50) {
-                shortReviewsCount++;
-            } else if (review.length() > 200) {
-                longReviewsCount++;
+            if (ENGINE != null) {
+                return ENGINE.analyzeProduct(productId, deadlineMillis);
+            }
+            return productAnalyzer().analyze(productId, analysisStore.load(productId), forceRefresh, depth);
+        } catch (SdkClientException e) {
+            AwsClients.reportFailure(e);
+            throw e;
+        } finally {
+            AwsClients.resetIfUnhealthy();
+            log(context, metrics.summary(ENGINE != null ? ENGINE.name() : "sync"));
+            if (resultCache != null) {
+                log(context, resultCache.counters().stream().map(CacheCounters::toString).collect(Collectors.joining(" ")));
             }
         }
-
-        return buildFinalResult(reviews.size(), sentimentCounts, sentimentConfidences, aspectSentiments, shortReviewsCount, longReviewsCount, keyPhrases);
-    }
-
-    private DetectSentimentResult detectSentiment(String review) {
-        DetectSentimentRequest sentimentRequest = new DetectSentimentRequest()
-                .withText(review)
-                .withLanguageCode("en");
-
-        return comprehendClient.detectSentiment(sentimentRequest);
     }
 
-    private void analyzeKeyPhrases(String review, String sentiment, Map<String, Map<String, Integer>> aspectSentiments, List<String> keyPhrases) {
-        DetectKeyPhrasesRequest keyPhrasesRequest = new DetectKeyPhrasesRequest()
-                .withText(review)
-                .withLanguageCode("en");
-
-        DetectKeyPhrasesResult keyPhrasesResult = comprehendClient.detectKeyPhrases(keyPhrasesRequest);
-
-        for (KeyPhrase phrase : keyPhrasesResult.getKeyPhrases()) {
-            String keyPhrase = phrase.getText().toLowerCase();
-            keyPhrases.add(keyPhrase);
-
-            aspectSentiments.computeIfAbsent(keyPhrase, k -> initializeSentimentCounts());
-            incrementSentimentCount(aspectSentiments.get(keyPhrase), sentiment);
+    private Map<String, Map<String, Object>> analyzeProducts(List<String> productIds, boolean forceRefresh, AnalysisDepth depth) {
+        if (ENGINE == null) {
+            return productAnalyzer().analyzeAll(productIds, forceRefresh, depth);
         }
-    }
-
-    private Map<String, Integer> initializeSentimentCounts() {
-        return new HashMap<>(Map.of("POSITIVE", 0, "NEGATIVE", 0, "NEUTRAL", 0, "MIXED", 0));
-    }
-
-    private Map<String, Double> initializeSentimentConfidences() {
-        return new HashMap<>(Map.of("POSITIVE", 0.0, "NEGATIVE", 0.0, "NEUTRAL", 0.0, "MIXED", 0.0));
-    }
-
-    private void incrementSentimentCount(Map<String, Integer> sentimentCounts, String sentiment) {
-        sentimentCounts.put(sentiment, sentimentCounts.get(sentiment) + 1);
-    }
-
-    private void updateSentimentConfidence(Map<String, Double> sentimentConfidences, String sentiment, SentimentScore sentimentScore) {
-        double maxConfidence = getMaxSentimentConfidence(sentimentScore);
-        if (!Double.isNaN(maxConfidence)) {
-            sentimentConfidences.put(sentiment, sentimentConfidences.get(sentiment) + maxConfidence);
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            try {
+                results.put(productId, ENGINE.analyzeProduct(productId, deadlineMillis));
+            } catch (RuntimeException e) {
+                AwsClients.reportFailure(e);
+                results.put(productId, Map.of("result", "Error: " + e.getMessage()));
+            }
         }
+        return results;
     }
 
-    private double getMaxSentimentConfidence(SentimentScore sentimentScore) {
-        return Math.max(Math.max(sentimentScore.getPositive(), sentimentScore.getNegative()),
-                Math.max(sentimentScore.getNeutral(), sentimentScore.getMixed()));
+    private ProductAnalyzer productAnalyzer() {
+        resultCache = TieredResultCache.overRemote(new DynamoResultCache(AwsClients.dynamoDBClient(), deadlineMillis));
+        ReviewAnalyzer reviewAnalyzer = new ReviewAnalyzer(AwsClients.comprehend(), resultCache);
+        return new ProductAnalyzer(AwsClients.dynamoDBClient(), analysisStore, reviewAnalyzer, deadlineMillis);
     }
 
-    private Map<String, Object> buildFinalResult(int totalReviews, Map<String, Integer> sentimentCounts, Map<String, Double> sentimentConfidences,
-                                                 Map<String, Map<String, Integer>> aspectSentiments, int shortReviewsCount, int longReviewsCount, List<String> keyPhrases) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("total_reviews", totalReviews);
-        result.put("sentiment_percentages", calculateSentimentPercentages(sentimentCounts, totalReviews));
-        result.put("average_sentiment_confidence", calculateAverageConfidence(sentimentCounts, sentimentConfidences));
-        result.put("short_reviews_count", shortReviewsCount);
-        result.put("long_reviews_count", longReviewsCount);
-        result.put("top_key_phrases", getTopKeyPhrases(keyPhrases));
-        result.put("top_aspect_based_sentiments", getTopAspectSentiments(aspectSentiments));
-
-        return result;
-    }
-
-    private Map<String, Double> calculateSentimentPercentages(Map<String, Integer> sentimentCounts, int totalReviews) {
-        return sentimentCounts.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> (e.getValue() / (double) totalReviews) * 100));
-    }
-
-    private Map<String, Double> calculateAverageConfidence(Map<String, Integer> sentimentCounts, Map<String, Double> sentimentConfidences) {
-        return sentimentCounts.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, e -> {
-                    int count = e.getValue();
-                    return count > 0 ? sentimentConfidences.get(e.getKey()) / count : 0.0;
-                }));
+    private static List<String> parseProductIds(String productIds) {
+        if (productIds == null) {
+            return List.of();
+        }
+        Set<String> distinctIds = new LinkedHashSet<>();
+        for (String productId : productIds.split(",")) {
+            if (!productId.isBlank()) {
+                distinctIds.add(productId.trim());
+            }
+        }
+        return List.copyOf(distinctIds);
     }
 
-    private List<String> getTopKeyPhrases(List<String> keyPhrases) {
-        return keyPhrases.stream()
-                .limit(5)  // Change ranking logic as needed
-                .collect(Collectors.toList());
+    private static ProductAnalysisEngine loadEngine(String engineName) {
+        if ("sync".equalsIgnoreCase(engineName)) {
+            return null;
+        }
+        for (ProductAnalysisEngine engine : ServiceLoader.load(ProductAnalysisEngine.class)) {
+            if (engine.name().equalsIgnoreCase(engineName)) {
+                return engine;
+            }
+        }
+        throw new IllegalStateException("Analysis engine '" + engineName + "' is not packaged with this function");
     }
 
-    private Map<String, Map<String, Integer>> getTopAspectSentiments(Map<String, Map<String, Integer>> aspectSentiments) {
-        return aspectSentiments.entrySet().stream()
-                .sorted((a, b) -> Integer.compare(b.getValue().get("POSITIVE"), a.getValue().get("POSITIVE")))  // Sort by POSITIVE sentiment
-                .limit(5)
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    private static void log(Context context, String message) {
+        if (context != null) {
+            context.getLogger().log(message);
+        }
     }
 
-    private void storePrecomputedResult(String productId, Map<String, Object> analysisResult) {
-        Table table = dynamoDB.getTable(ANALYSIS_TABLE);
-        table.putItem(new PutItemSpec().withItem(new Item()
-                .withPrimaryKey("product_id", productId)
-                .withMap("review_analysis", analysisResult)));
+    private boolean isInvalidProductId(String productId) {
+        return productId == null || productId.isEmpty();
     }
 }
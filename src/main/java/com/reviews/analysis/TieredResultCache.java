@@ -0,0 +1,88 @@
+package com.reviews.analysis;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Consults its tiers from the cheapest to the most expensive, promotes hits into the tiers that missed them
+// and writes new results to every tier.
+final class TieredResultCache implements ResultCache {
+
+    // The local tiers are shared by every invocation the container serves.
+    private static final List<ResultCache> LOCAL_TIERS = localTiers();
+
+    private final List<ResultCache> tiers;
+
+    TieredResultCache(List<ResultCache> tiers) {
+        this.tiers = tiers;
+    }
+
+    static TieredResultCache overRemote(ResultCache remote) {
+        List<ResultCache> tiers = new ArrayList<>(LOCAL_TIERS);
+        tiers.add(remote);
+        return new TieredResultCache(tiers);
+    }
+
+    @Override
+    public Map<String, ReviewResult> getAll(Collection<String> keys) {
+        Map<String, ReviewResult> results = new HashMap<>();
+        Collection<String> remaining = keys;
+        for (int i = 0; i < tiers.size() && !remaining.isEmpty(); i++) {
+            Map<String, ReviewResult> tierResults = tiers.get(i).getAll(remaining);
+            if (tierResults.isEmpty()) {
+                continue;
+            }
+            for (int j = 0; j < i; j++) {
+                tiers.get(j).putAll(tierResults);
+            }
+            results.putAll(tierResults);
+
+            List<String> stillMissing = new ArrayList<>(remaining.size());
+            for (String key : remaining) {
+                if (!tierResults.containsKey(key)) {
+                    stillMissing.add(key);
+                }
+            }
+            remaining = stillMissing;
+        }
+        return results;
+    }
+
+    @Override
+    public void putAll(Map<String, ReviewResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+        for (ResultCache tier : tiers) {
+            tier.putAll(results);
+        }
+    }
+
+    @Override
+    public List<CacheCounters> counters() {
+        List<CacheCounters> counters = new ArrayList<>();
+        for (ResultCache tier : tiers) {
+            counters.addAll(tier.counters());
+        }
+        return counters;
+    }
+
+    private static List<ResultCache> localTiers() {
+        List<ResultCache> tiers = new ArrayList<>();
+        tiers.add(new LocalResultCache(AnalysisConfig.getLong("LOCAL_CACHE_MAX_ENTRIES", 100_000)));
+        if (AnalysisConfig.getBoolean("TMP_CACHE_ENABLED", true)) {
+            try {
+                tiers.add(MappedFileResultCache.open(Path.of(AnalysisConfig.getString("TMP_CACHE_FILE", "/tmp/review-result-cache.bin")),
+                        AnalysisConfig.getInt("TMP_CACHE_SLOTS", 131_072),
+                        AnalysisConfig.getInt("TMP_CACHE_SLOT_SIZE", 1_024)));
+            } catch (IOException | RuntimeException e) {
+                // Without a writable /tmp the container still has the heap and remote tiers.
+            }
+        }
+        return List.copyOf(tiers);
+    }
+}
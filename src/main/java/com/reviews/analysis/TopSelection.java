@@ -0,0 +1,36 @@
+package com.reviews.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Picks the k greatest elements in O(n log k) with a bounded min-heap, instead of sorting all n of them.
+final class TopSelection {
+
+    private TopSelection() {
+    }
+
+    // Returns at most k elements, greatest first according to order.
+    static <T> List<T> greatest(Iterable<T> elements, int k, Comparator<? super T> order) {
+        if (k <= 0) {
+            return List.of();
+        }
+        PriorityQueue<T> heap = new PriorityQueue<>(k + 1, order);
+        for (T element : elements) {
+            if (heap.size() < k) {
+                heap.add(element);
+            } else if (order.compare(element, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(element);
+            }
+        }
+        List<T> greatest = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            greatest.add(heap.poll());
+        }
+        Collections.reverse(greatest);
+        return greatest;
+    }
+}
@@ -0,0 +1,37 @@
+package com.reviews.analysis;
+
+// Wilson score interval for a proportion, which unlike the normal approximation stays inside [0, 1] and behaves
+// for small samples and shares near 0 or 1.
+record WilsonInterval(double low, double high) {
+
+    static final double Z_95 = 1.96;
+
+    static WilsonInterval of(double successes, double trials, double z) {
+        if (trials <= 0) {
+            return new WilsonInterval(0, 1);
+        }
+        double share = successes / trials;
+        double z2 = z * z;
+        double centre = share + z2 / (2 * trials);
+        double margin = z * Math.sqrt((share * (1 - share) + z2 / (4 * trials)) / trials);
+        double scale = 1 + z2 / trials;
+        return new WilsonInterval(Math.max(0, (centre - margin) / scale), Math.min(1, (centre + margin) / scale));
+    }
+
+    // A sample of n drawn without replacement from a population of N carries the information of n (N - 1) / (N - n)
+    // independent draws; a sample of the whole population pins the share down exactly.
+    static WilsonInterval ofSample(long successes, long sampleSize, long populationSize, double z) {
+        if (sampleSize > 0 && sampleSize >= populationSize) {
+            double share = (double) successes / sampleSize;
+            return new WilsonInterval(share, share);
+        }
+        double effectiveTrials = populationSize > 1
+                ? sampleSize * (populationSize - 1d) / (populationSize - sampleSize)
+                : sampleSize;
+        return of(successes * (effectiveTrials / Math.max(1, sampleSize)), effectiveTrials, z);
+    }
+
+    double halfWidth() {
+        return (high - low) / 2;
+    }
+}
@@ -0,0 +1,91 @@
+package com.reviews.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnalysisScopeTest {
+
+    @Test
+    void joinsEverySubtask() {
+        AtomicInteger finished = new AtomicInteger();
+        try (AnalysisScope scope = new AnalysisScope(Executors.newFixedThreadPool(4), true, Long.MAX_VALUE)) {
+            for (int i = 0; i < 20; i++) {
+                scope.fork(finished::incrementAndGet);
+            }
+            scope.join();
+        }
+
+        assertEquals(20, finished.get());
+    }
+
+    @Test
+    void propagatesTheFirstFailure() {
+        IllegalStateException failure = new IllegalStateException("batch failed");
+        try (AnalysisScope scope = new AnalysisScope(Executors.newFixedThreadPool(2), true, Long.MAX_VALUE)) {
+            scope.fork(() -> {
+                throw failure;
+            });
+            scope.fork(AnalysisScopeTest::sleepUntilInterrupted);
+
+            assertSame(failure, assertThrows(IllegalStateException.class, scope::join));
+        }
+    }
+
+    @Test
+    void closeWaitsForInterruptedSubtasksUntilTheDeadline() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean stillRunning = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        AnalysisScope scope = new AnalysisScope(executor, false, System.currentTimeMillis() + 5_000);
+        scope.fork(() -> {
+            stillRunning.set(true);
+            started.countDown();
+            sleepUntilInterrupted();
+            // Simulates an SDK call that takes a moment to give up after its interrupt.
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            stillRunning.set(false);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scope.close();
+
+        assertFalse(stillRunning.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void failsAtTheDeadlineWithoutRunningQueuedSubtasks() {
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        AnalysisScope scope = new AnalysisScope(Executors.newFixedThreadPool(1), true, System.currentTimeMillis() + 100);
+        scope.fork(AnalysisScopeTest::sleepUntilInterrupted);
+        scope.fork(() -> queuedRan.set(true));
+
+        assertThrows(DeadlineExceededException.class, scope::join);
+        scope.close();
+
+        assertFalse(queuedRan.get());
+    }
+
+    private static void sleepUntilInterrupted() {
+        try {
+            Thread.sleep(60_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.reviews.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class KeyPhraseSketchTest {
+
+    @Test
+    void keepsTheHeavyHittersOfALongTail() {
+        KeyPhraseSketch sketch = new KeyPhraseSketch(10);
+        for (int i = 0; i < 1_000; i++) {
+            sketch.offer("phrase-" + i);
+            sketch.offer("battery");
+            if (i % 2 == 0) {
+                sketch.offer("screen");
+            }
+        }
+
+        assertEquals(List.of("battery", "screen"), sketch.top(2));
+    }
+
+    @Test
+    void mergeMatchesASingleSketchOfBothStreams() {
+        KeyPhraseSketch left = new KeyPhraseSketch(20);
+        KeyPhraseSketch right = new KeyPhraseSketch(20);
+        KeyPhraseSketch whole = new KeyPhraseSketch(20);
+        offer(left, whole, "battery", 5);
+        offer(left, whole, "screen", 3);
+        offer(right, whole, "screen", 4);
+        offer(right, whole, "price", 2);
+
+        left.merge(right);
+
+        assertEquals(whole.top(3), left.top(3));
+        assertEquals(List.of("screen", "battery", "price"), left.top(3));
+    }
+
+    @Test
+    void mergeKeepsPhrasesThatAreFrequentOnlyOverall() {
+        KeyPhraseSketch left = new KeyPhraseSketch(3);
+        KeyPhraseSketch right = new KeyPhraseSketch(3);
+        for (int i = 0; i < 30; i++) {
+            left.offer("left-" + i);
+            right.offer("right-" + i);
+        }
+        for (int i = 0; i < 20; i++) {
+            left.offer("battery");
+            right.offer("battery");
+        }
+
+        assertEquals("battery", left.merge(right).top(1).get(0));
+    }
+
+    @Test
+    void mergeSumsSentimentTallies() {
+        KeyPhraseSketch left = new KeyPhraseSketch(5);
+        KeyPhraseSketch right = new KeyPhraseSketch(5);
+        left.offer("battery", Sentiment.POSITIVE);
+        left.offer("battery", Sentiment.NEGATIVE);
+        right.offer("battery", Sentiment.POSITIVE);
+        right.offer("screen", Sentiment.MIXED);
+
+        Map<String, int[]> tallies = left.merge(right).sentimentTallies();
+
+        assertArrayEquals(new int[] {2, 1, 0, 0}, tallies.get("battery"));
+        assertArrayEquals(new int[] {0, 0, 0, 1}, tallies.get("screen"));
+    }
+
+    @Test
+    void retractUndoesOffer() {
+        KeyPhraseSketch sketch = new KeyPhraseSketch(5);
+        sketch.offer("battery", Sentiment.POSITIVE);
+        sketch.offer("battery", Sentiment.POSITIVE);
+        sketch.offer("screen", Sentiment.NEGATIVE);
+
+        sketch.retract("battery", Sentiment.POSITIVE);
+        sketch.retract("battery", Sentiment.POSITIVE);
+
+        assertEquals(List.of("screen"), sketch.top(5));
+        assertFalse(sketch.sentimentTallies().containsKey("battery"));
+    }
+
+    @Test
+    void roundTripsThroughItsSerializedForm() throws IOException {
+        KeyPhraseSketch sketch = new KeyPhraseSketch(3);
+        for (String phrase : List.of("battery", "screen", "battery", "price", "case", "battery", "screen")) {
+            sketch.offer(phrase, Sentiment.POSITIVE);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+
+        KeyPhraseSketch restored = KeyPhraseSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.top(3), restored.top(3));
+        assertArrayEquals(sketch.sentimentTallies().get("battery"), restored.sentimentTallies().get("battery"));
+        // The restored sketch keeps evicting its minimum like the original.
+        sketch.offer("cable");
+        restored.offer("cable");
+        assertEquals(sketch.top(3), restored.top(3));
+    }
+
+    private static void offer(KeyPhraseSketch partial, KeyPhraseSketch whole, String phrase, int times) {
+        for (int i = 0; i < times; i++) {
+            partial.offer(phrase);
+            whole.offer(phrase);
+        }
+    }
+}
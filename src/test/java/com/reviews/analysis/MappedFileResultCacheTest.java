@@ -0,0 +1,56 @@
+package com.reviews.analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedFileResultCacheTest {
+
+    private static final String KEY = ResultCache.keyFor("en", "Great battery life", AnalysisDepth.FULL);
+    private static final ReviewResult RESULT = new ReviewResult(Sentiment.POSITIVE, 0.97, List.of("battery life"));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void returnsWhatWasPut() throws IOException {
+        MappedFileResultCache cache = MappedFileResultCache.open(directory.resolve("cache"), 64, 256);
+
+        cache.putAll(Map.of(KEY, RESULT));
+
+        assertEquals(Map.of(KEY, RESULT), cache.getAll(List.of(KEY)));
+    }
+
+    @Test
+    void keepsEntriesAcrossReopening() throws IOException {
+        Path file = directory.resolve("cache");
+        MappedFileResultCache.open(file, 64, 256).putAll(Map.of(KEY, RESULT));
+
+        assertEquals(Map.of(KEY, RESULT), MappedFileResultCache.open(file, 64, 256).getAll(List.of(KEY)));
+    }
+
+    @Test
+    void dropsEntriesWhenTheGeometryChangesAtTheSameFileSize() throws IOException {
+        Path file = directory.resolve("cache");
+        MappedFileResultCache.open(file, 64, 256).putAll(Map.of(KEY, RESULT));
+        MappedFileResultCache.open(file, 32, 512);
+
+        assertTrue(MappedFileResultCache.open(file, 64, 256).getAll(List.of(KEY)).isEmpty());
+    }
+
+    @Test
+    void skipsResultsTooLargeForASlot() throws IOException {
+        MappedFileResultCache cache = MappedFileResultCache.open(directory.resolve("cache"), 64, 64);
+
+        cache.putAll(Map.of(KEY, new ReviewResult(Sentiment.NEGATIVE, 0.5, List.of("a".repeat(100)))));
+
+        assertTrue(cache.getAll(List.of(KEY)).isEmpty());
+    }
+}
@@ -0,0 +1,64 @@
+package com.reviews.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReviewAggregateTest {
+
+    @Test
+    void roundTripsTheCurrentFormat() {
+        ReviewAggregate aggregate = new ReviewAggregate();
+        aggregate.add(new ReviewResult(Sentiment.POSITIVE, 0.9, List.of("battery", "screen")), 20);
+        aggregate.add(new ReviewResult(Sentiment.POSITIVE, 0.8, List.of("battery")), 120);
+        aggregate.add(new ReviewResult(Sentiment.NEGATIVE, 0.7, List.of("screen", "price")), 300);
+
+        ReviewAggregate restored = ReviewAggregate.deserialize(aggregate.serialize());
+
+        assertEquals(AnalysisDepth.FULL, restored.depth());
+        assertEquals(aggregate.buildFinalResult(), restored.buildFinalResult());
+    }
+
+    @Test
+    void roundTripsTheDepth() {
+        ReviewAggregate aggregate = new ReviewAggregate(AnalysisDepth.SENTIMENT);
+        aggregate.add(new ReviewResult(Sentiment.MIXED, 0.6, null), 60);
+
+        ReviewAggregate restored = ReviewAggregate.deserialize(aggregate.serialize());
+
+        assertEquals(AnalysisDepth.SENTIMENT, restored.depth());
+        assertEquals(aggregate.buildFinalResult(), restored.buildFinalResult());
+        assertFalse(restored.buildFinalResult().containsKey("top_key_phrases"));
+    }
+
+    @Test
+    void rejectsUnknownVersions() throws IOException {
+        byte[] serialized = serialized(99);
+
+        assertThrows(IllegalArgumentException.class, () -> ReviewAggregate.deserialize(serialized));
+    }
+
+    @Test
+    void refusesToMergeDifferentDepths() {
+        ReviewAggregate full = new ReviewAggregate(AnalysisDepth.FULL);
+        ReviewAggregate sentimentOnly = new ReviewAggregate(AnalysisDepth.SENTIMENT);
+
+        assertThrows(IllegalArgumentException.class, () -> full.merge(sentimentOnly));
+    }
+
+    private static byte[] serialized(int version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(version);
+        }
+        return bytes.toByteArray();
+    }
+}
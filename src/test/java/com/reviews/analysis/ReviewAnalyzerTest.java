@@ -0,0 +1,124 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.comprehend.AbstractAmazonComprehend;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesItemResult;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesRequest;
+import com.amazonaws.services.comprehend.model.BatchDetectKeyPhrasesResult;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentItemResult;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentRequest;
+import com.amazonaws.services.comprehend.model.BatchDetectSentimentResult;
+import com.amazonaws.services.comprehend.model.KeyPhrase;
+import com.amazonaws.services.comprehend.model.SentimentScore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReviewAnalyzerTest {
+
+    private static final String REVIEW = "The battery lasts for days";
+
+    private final FakeComprehend comprehend = new FakeComprehend();
+    private final LocalResultCache cache = new LocalResultCache(100);
+    private final ReviewAnalyzer analyzer = new ReviewAnalyzer(comprehend, cache);
+
+    @Test
+    void analyzesMissesAndCachesTheirResults() {
+        assertEquals(Map.of(REVIEW, new ReviewResult(Sentiment.POSITIVE, 0.75, List.of("battery life"))), analyze(AnalysisDepth.FULL, REVIEW, " "));
+
+        assertEquals(List.of(REVIEW), comprehend.sentimentTexts);
+        assertEquals(List.of(REVIEW), comprehend.keyPhraseTexts);
+        assertEquals(new ReviewResult(Sentiment.POSITIVE, 0.75, List.of("battery life")), cached(AnalysisDepth.FULL));
+    }
+
+    @Test
+    void servesCachedResultsWithoutComprehend() {
+        cache.putAll(Map.of(key(AnalysisDepth.FULL), new ReviewResult(Sentiment.NEGATIVE, 0.8, List.of("battery"))));
+
+        assertEquals(Map.of(REVIEW, new ReviewResult(Sentiment.NEGATIVE, 0.8, List.of("battery"))), analyze(AnalysisDepth.FULL, REVIEW));
+
+        assertEquals(List.of(), comprehend.sentimentTexts);
+        assertEquals(List.of(), comprehend.keyPhraseTexts);
+    }
+
+    @Test
+    void answersASentimentRequestFromAFullResult() {
+        cache.putAll(Map.of(key(AnalysisDepth.FULL), new ReviewResult(Sentiment.NEGATIVE, 0.8, List.of("battery"))));
+
+        assertEquals(Map.of(REVIEW, new ReviewResult(Sentiment.NEGATIVE, 0.8, null)), analyze(AnalysisDepth.SENTIMENT, REVIEW));
+
+        assertEquals(List.of(), comprehend.sentimentTexts);
+    }
+
+    @Test
+    void upgradesASentimentResultWithKeyPhrasesOnly() {
+        cache.putAll(Map.of(key(AnalysisDepth.SENTIMENT), new ReviewResult(Sentiment.MIXED, 0.6, List.of())));
+
+        assertEquals(Map.of(REVIEW, new ReviewResult(Sentiment.MIXED, 0.6, List.of("battery life"))), analyze(AnalysisDepth.FULL, REVIEW));
+
+        assertEquals(List.of(), comprehend.sentimentTexts);
+        assertEquals(List.of(REVIEW), comprehend.keyPhraseTexts);
+        assertEquals(new ReviewResult(Sentiment.MIXED, 0.6, List.of("battery life")), cached(AnalysisDepth.FULL));
+    }
+
+    @Test
+    void cachesSentimentOnlyResultsUnderTheirOwnKeys() {
+        assertEquals(Map.of(REVIEW, new ReviewResult(Sentiment.POSITIVE, 0.75, null)), analyze(AnalysisDepth.SENTIMENT, REVIEW));
+
+        assertEquals(List.of(), comprehend.keyPhraseTexts);
+        assertEquals(new ReviewResult(Sentiment.POSITIVE, 0.75, List.of()), cached(AnalysisDepth.SENTIMENT));
+        assertNull(cached(AnalysisDepth.FULL));
+    }
+
+    private Map<String, ReviewResult> analyze(AnalysisDepth depth, String... reviews) {
+        Map<String, ReviewResult> results = Collections.synchronizedMap(new HashMap<>());
+        analyzer.analyze(List.of(reviews), depth, Long.MAX_VALUE, (texts, batchResults) -> {
+            for (int i = 0; i < texts.size(); i++) {
+                results.put(texts.get(i), batchResults.get(i));
+            }
+        });
+        return results;
+    }
+
+    private ReviewResult cached(AnalysisDepth depth) {
+        return cache.getAll(List.of(key(depth))).get(key(depth));
+    }
+
+    private static String key(AnalysisDepth depth) {
+        return ResultCache.keyFor(ReviewAnalyzer.LANGUAGE_CODE, REVIEW, depth);
+    }
+
+    // Finds every review positive, at a confidence of 0.75, and about "Battery Life".
+    private static final class FakeComprehend extends AbstractAmazonComprehend {
+
+        private final List<String> sentimentTexts = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> keyPhraseTexts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public BatchDetectSentimentResult batchDetectSentiment(BatchDetectSentimentRequest request) {
+            sentimentTexts.addAll(request.getTextList());
+            List<BatchDetectSentimentItemResult> results = new ArrayList<>();
+            for (int i = 0; i < request.getTextList().size(); i++) {
+                results.add(new BatchDetectSentimentItemResult().withIndex(i).withSentiment("POSITIVE")
+                        .withSentimentScore(new SentimentScore().withPositive(0.75f).withNegative(0.25f).withNeutral(0f).withMixed(0f)));
+            }
+            return new BatchDetectSentimentResult().withResultList(results).withErrorList(List.of());
+        }
+
+        @Override
+        public BatchDetectKeyPhrasesResult batchDetectKeyPhrases(BatchDetectKeyPhrasesRequest request) {
+            keyPhraseTexts.addAll(request.getTextList());
+            List<BatchDetectKeyPhrasesItemResult> results = new ArrayList<>();
+            for (int i = 0; i < request.getTextList().size(); i++) {
+                results.add(new BatchDetectKeyPhrasesItemResult().withIndex(i).withKeyPhrases(new KeyPhrase().withText("Battery Life")));
+            }
+            return new BatchDetectKeyPhrasesResult().withResultList(results).withErrorList(List.of());
+        }
+    }
+}
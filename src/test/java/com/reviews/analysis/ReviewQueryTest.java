@@ -0,0 +1,124 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.QueryRequest;
+import com.amazonaws.services.dynamodbv2.model.QueryResult;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewQueryTest {
+
+    @Test
+    void splitsNumericKeysIntoRangesThatReadEveryReviewOnce() {
+        List<Object> keys = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            keys.add(new BigDecimal(i));
+        }
+        FakeReviews reviews = new FakeReviews(keys);
+
+        List<ReviewQuery.KeyRange> ranges = ReviewQuery.partition(reviews, "p1", null, 4);
+
+        assertEquals(4, ranges.size());
+        assertNull(ranges.get(0).after());
+        assertNull(ranges.get(ranges.size() - 1).upTo());
+        assertEquals(keys, readAll(reviews, ranges));
+    }
+
+    @Test
+    void splitsStringKeysOnTheCharactersAfterTheirCommonPrefix() {
+        List<Object> keys = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            keys.add("review-" + c + c);
+        }
+        FakeReviews reviews = new FakeReviews(keys);
+
+        List<ReviewQuery.KeyRange> ranges = ReviewQuery.partition(reviews, "p1", null, 3);
+
+        assertEquals(3, ranges.size());
+        assertTrue(ranges.get(0).upTo().toString().startsWith("review-"));
+        assertEquals(keys, readAll(reviews, ranges));
+    }
+
+    @Test
+    void onlyCoversReviewsPastTheWatermark() {
+        List<Object> keys = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            keys.add(new BigDecimal(i));
+        }
+        FakeReviews reviews = new FakeReviews(keys);
+
+        List<ReviewQuery.KeyRange> ranges = ReviewQuery.partition(reviews, "p1", new BigDecimal(20), 2);
+
+        assertEquals(new BigDecimal(20), ranges.get(0).after());
+        assertEquals(keys.subList(20, 40), readAll(reviews, ranges));
+    }
+
+    @Test
+    void leavesASingleReviewUnsplit() {
+        FakeReviews reviews = new FakeReviews(List.of(new BigDecimal(7)));
+
+        assertEquals(List.of(new ReviewQuery.KeyRange(null, null)), ReviewQuery.partition(reviews, "p1", null, 4));
+    }
+
+    private static List<Object> readAll(FakeReviews reviews, List<ReviewQuery.KeyRange> ranges) {
+        List<Object> read = new ArrayList<>();
+        for (ReviewQuery.KeyRange range : ranges) {
+            Iterator<QueryResult> pages = ReviewQuery.pages(reviews, "p1", range);
+            while (pages.hasNext()) {
+                for (Map<String, AttributeValue> item : pages.next().getItems()) {
+                    read.add(ReviewQuery.sortKey(item));
+                }
+            }
+        }
+        return read;
+    }
+
+    // The reviews of one product with the given ascending sort keys, served in a single page per query.
+    private static final class FakeReviews extends AbstractAmazonDynamoDB {
+
+        private final List<Object> keys;
+
+        FakeReviews(List<Object> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public QueryResult query(QueryRequest request) {
+            String condition = request.getKeyConditionExpression();
+            Map<String, AttributeValue> values = request.getExpressionAttributeValues();
+            Object after = sortKey(values.get(":v_after"));
+            Object upTo = sortKey(values.get(":v_up_to"));
+            boolean includeAfter = condition.contains("BETWEEN");
+
+            List<Map<String, AttributeValue>> items = new ArrayList<>();
+            for (Object key : keys) {
+                boolean aboveLower = after == null || ReviewQuery.compareSortKeys(key, after) > (includeAfter ? -1 : 0);
+                if (aboveLower && (upTo == null || ReviewQuery.compareSortKeys(key, upTo) <= 0)) {
+                    items.add(Map.of(SentimentAnalysisLambda.SORT_KEY, ReviewQuery.toAttributeValue(key),
+                            "review_text", new AttributeValue("review " + key)));
+                }
+            }
+            if (Boolean.FALSE.equals(request.getScanIndexForward())) {
+                items = items.reversed();
+            }
+            if (request.getLimit() != null && items.size() > request.getLimit()) {
+                items = items.subList(0, request.getLimit());
+            }
+            return new QueryResult().withItems(items);
+        }
+
+        private static Object sortKey(AttributeValue value) {
+            return value != null ? ReviewQuery.sortKey(value.getN(), value.getS()) : null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewQueueHandlerTest {
+
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void analyzesEachProductOnceAtTheRichestDepthAskedFor() {
+        SQSEvent event = event(
+                message("m1", "p1", Map.of("analysis_depth", "SENTIMENT")),
+                message("m2", "p1", Map.of("analysis_depth", "FULL", "force_refresh", "true")),
+                message("m3", "p2", Map.of("analysis_depth", "key_phrases")));
+
+        SQSBatchResponse response = new ReviewQueueHandler(this::record).handleRequest(event, null);
+
+        assertTrue(response.getBatchItemFailures().isEmpty());
+        assertEquals(2, processed.size());
+        assertTrue(processed.contains("p1 true FULL"));
+        assertTrue(processed.contains("p2 false KEY_PHRASES"));
+    }
+
+    @Test
+    void readsTheProductFromTheAttributeBeforeTheBody() {
+        SQSEvent.SQSMessage message = message("m1", " body-product ", Map.of("product_id", "attribute-product"));
+
+        new ReviewQueueHandler(this::record).handleRequest(event(message), null);
+
+        assertEquals(List.of("attribute-product false " + AnalysisDepth.DEFAULT), processed);
+    }
+
+    @Test
+    void reportsEveryMessageOfAFailedProduct() {
+        SQSEvent event = event(
+                message("m1", "bad", Map.of()),
+                message("m2", "good", Map.of()),
+                message("m3", "bad", Map.of()));
+        ReviewQueueHandler handler = new ReviewQueueHandler((productId, forceRefresh, depth, deadlineMillis) -> {
+            if (productId.equals("bad")) {
+                throw new IllegalStateException("analysis failed");
+            }
+        });
+
+        assertEquals(List.of("m1", "m3"), failedMessageIds(handler.handleRequest(event, null)));
+    }
+
+    @Test
+    void rejectsMessagesWithoutProductOrWithUnknownDepth() {
+        SQSEvent event = event(
+                message("m1", "  ", Map.of()),
+                message("m2", "p1", Map.of("analysis_depth", "DEEPEST")),
+                message("m3", "p2", Map.of()));
+
+        SQSBatchResponse response = new ReviewQueueHandler(this::record).handleRequest(event, null);
+
+        assertEquals(List.of("m1", "m2"), failedMessageIds(response));
+        assertEquals(List.of("p2 false " + AnalysisDepth.DEFAULT), processed);
+    }
+
+    @Test
+    void doesNotForceARefreshOnRedelivery() {
+        SQSEvent.SQSMessage message = message("m1", "p1", Map.of("force_refresh", "true"));
+        message.setAttributes(Map.of("ApproximateReceiveCount", "2"));
+
+        new ReviewQueueHandler(this::record).handleRequest(event(message), null);
+
+        assertEquals(List.of("p1 false " + AnalysisDepth.DEFAULT), processed);
+    }
+
+    @Test
+    @Timeout(value = 10, threadMode = Timeout.ThreadMode.SEPARATE_THREAD)
+    void returnsAtTheDeadlineWhileAnAnalysisIgnoresItsInterrupt() {
+        CountDownLatch release = new CountDownLatch(1);
+        ReviewQueueHandler handler = new ReviewQueueHandler((productId, forceRefresh, depth, deadlineMillis) -> {
+            if (productId.equals("stuck")) {
+                awaitUninterruptibly(release);
+            }
+        });
+        long startedAt = System.currentTimeMillis();
+
+        // One second of the two remaining is the deadline margin.
+        SQSBatchResponse response = handler.handleRequest(event(message("m1", "stuck", Map.of()), message("m2", "p2", Map.of())),
+                context(2_000));
+
+        long elapsedMillis = System.currentTimeMillis() - startedAt;
+        release.countDown();
+        assertEquals(List.of("m1"), failedMessageIds(response));
+        assertTrue(elapsedMillis < 1_800, "returned after " + elapsedMillis + " ms");
+    }
+
+    private void record(String productId, boolean forceRefresh, AnalysisDepth depth, long deadlineMillis) {
+        processed.add(productId + " " + forceRefresh + " " + depth);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Like an SDK call that does not respond to interrupts.
+            }
+        }
+    }
+
+    private static Context context(int remainingMillis) {
+        LambdaLogger logger = new LambdaLogger() {
+            @Override
+            public void log(String message) {
+            }
+
+            @Override
+            public void log(byte[] message) {
+            }
+        };
+        return (Context) Proxy.newProxyInstance(Context.class.getClassLoader(), new Class<?>[] {Context.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemainingTimeInMillis" -> remainingMillis;
+                    case "getLogger" -> logger;
+                    default -> null;
+                });
+    }
+
+    private static List<String> failedMessageIds(SQSBatchResponse response) {
+        return response.getBatchItemFailures().stream()
+                .map(SQSBatchResponse.BatchItemFailure::getItemIdentifier)
+                .sorted()
+                .toList();
+    }
+
+    private static SQSEvent event(SQSEvent.SQSMessage... messages) {
+        SQSEvent event = new SQSEvent();
+        event.setRecords(List.of(messages));
+        return event;
+    }
+
+    private static SQSEvent.SQSMessage message(String messageId, String body, Map<String, String> attributes) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId(messageId);
+        message.setBody(body);
+        message.setAttributes(Map.of("ApproximateReceiveCount", "1"));
+        Map<String, SQSEvent.MessageAttribute> messageAttributes = new HashMap<>();
+        attributes.forEach((name, value) -> {
+            SQSEvent.MessageAttribute attribute = new SQSEvent.MessageAttribute();
+            attribute.setDataType("String");
+            attribute.setStringValue(value);
+            messageAttributes.put(name, attribute);
+        });
+        message.setMessageAttributes(messageAttributes);
+        return message;
+    }
+}
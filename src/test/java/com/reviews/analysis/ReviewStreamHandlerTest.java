@@ -0,0 +1,85 @@
+package com.reviews.analysis;
+
+import com.amazonaws.services.lambda.runtime.events.DynamodbEvent;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.AttributeValue;
+import com.amazonaws.services.lambda.runtime.events.models.dynamodb.StreamRecord;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewStreamHandlerTest {
+
+    private static final ReviewResult GOOD = new ReviewResult(Sentiment.POSITIVE, 0.9, List.of("battery"));
+    private static final ReviewResult BAD = new ReviewResult(Sentiment.NEGATIVE, 0.8, List.of("screen"));
+    private static final Map<String, ReviewResult> RESULTS = Map.of("good", GOOD, "bad", BAD);
+
+    @Test
+    void addsNewReviewsAndMovesTheWatermarkPastThem() {
+        ReviewAggregate aggregate = new ReviewAggregate();
+
+        Object watermark = ReviewStreamHandler.applyRecord(record("INSERT", 12, "good", null), new BigDecimal(10), aggregate, RESULTS);
+
+        assertEquals(new BigDecimal(12), watermark);
+        assertEquals(aggregateOf(GOOD, "good"), aggregate.buildFinalResult());
+    }
+
+    @Test
+    void skipsInsertsAQueryAlreadyCounted() {
+        ReviewAggregate aggregate = new ReviewAggregate();
+
+        Object watermark = ReviewStreamHandler.applyRecord(record("INSERT", 8, "good", null), new BigDecimal(10), aggregate, RESULTS);
+
+        assertEquals(new BigDecimal(10), watermark);
+        assertEquals(new ReviewAggregate().buildFinalResult(), aggregate.buildFinalResult());
+    }
+
+    @Test
+    void replacesTheResultOfAnEditedCountedReview() {
+        ReviewAggregate aggregate = new ReviewAggregate();
+        aggregate.add(BAD, "bad".length());
+
+        Object watermark = ReviewStreamHandler.applyRecord(record("MODIFY", 8, "good", "bad"), new BigDecimal(10), aggregate, RESULTS);
+
+        assertEquals(new BigDecimal(10), watermark);
+        assertEquals(aggregateOf(GOOD, "good"), aggregate.buildFinalResult());
+    }
+
+    @Test
+    void leavesReviewsAResumedAnalysisWillReadAlone() {
+        List<ReviewQuery.KeyRange> continuation = List.of(new ReviewQuery.KeyRange(new BigDecimal(20), new BigDecimal(30)));
+
+        assertTrue(ReviewStreamHandler.isPendingInContinuation(record("INSERT", 25, "good", null), continuation));
+        assertFalse(ReviewStreamHandler.isPendingInContinuation(record("INSERT", 31, "good", null), continuation));
+        assertFalse(ReviewStreamHandler.isPendingInContinuation(record("INSERT", 25, "good", null), null));
+    }
+
+    private static Map<String, Object> aggregateOf(ReviewResult result, String text) {
+        ReviewAggregate aggregate = new ReviewAggregate();
+        aggregate.add(result, text.length());
+        return aggregate.buildFinalResult();
+    }
+
+    private static DynamodbEvent.DynamodbStreamRecord record(String eventName, int sortKey, String newText, String oldText) {
+        StreamRecord streamRecord = new StreamRecord();
+        streamRecord.setNewImage(image(sortKey, newText));
+        if (oldText != null) {
+            streamRecord.setOldImage(image(sortKey, oldText));
+        }
+        DynamodbEvent.DynamodbStreamRecord record = new DynamodbEvent.DynamodbStreamRecord();
+        record.setEventName(eventName);
+        record.setDynamodb(streamRecord);
+        return record;
+    }
+
+    private static Map<String, AttributeValue> image(int sortKey, String text) {
+        return Map.of("product_id", new AttributeValue().withS("p1"),
+                SentimentAnalysisLambda.SORT_KEY, new AttributeValue().withN(Integer.toString(sortKey)),
+                "review_text", new AttributeValue().withS(text));
+    }
+}